@@ -23,6 +23,8 @@ import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.INFO;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Proxy.Type;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -44,6 +46,10 @@ public final class Config {
 		}
 	}
 
+	public static enum HttpdExecutorMode {
+		CACHED, VIRTUAL, BOUNDED
+	}
+
 	public static boolean verboseLogging;
 	public static boolean authlibLogging;
 	public static boolean printUntransformedClass;
@@ -53,9 +59,30 @@ public final class Config {
 	public static boolean noLogFile;
 	public static boolean priorityVerifyingCustomName;
 	public static boolean noNamespaceSuffix;
+	public static boolean skipUnmatchedJars;
+	public static boolean jdkHttpd;
+	public static boolean inProcessApi;
+	public static boolean concurrentHasJoined;
 	public static int httpdPort;
+	public static int upstreamConnectTimeout;
+	public static int upstreamReadTimeout;
+	public static int upstreamThreads;
+	public static HttpdExecutorMode httpdExecutor;
+	public static int uuidCacheSize;
+	public static int uuidCacheTtl;
+	public static int uuidCacheNegativeTtl;
+	public static int uuidQueryDeadline;
+	public static int customUUIDQueryBatchSize;
+	public static int uuidQueryConcurrency;
+	public static int uuidBatchWindow;
+	public static int profileCacheSize;
+	public static int profileCacheTtl;
+	public static int profileCacheStaleTtl;
+	public static int httpdThreads;
+	public static int httpdQueueSize;
 	public static String namespace;
 	public static /* nullable */ Proxy mojangProxy;
+	public static /* nullable */ Path transformCacheDir;
 	public static Set<String> ignoredPackages;
 	public static FeatureOption mojangNamespace;
 	public static FeatureOption mojangYggdrasilService;
@@ -153,10 +180,31 @@ public final class Config {
 		}
 	}
 
+	private static void initHttpdExecutor() {
+		String prop = System.getProperty("multiyggdrasil.httpdExecutor");
+		if (prop == null) {
+			httpdExecutor = HttpdExecutorMode.CACHED;
+		} else {
+			try {
+				httpdExecutor = HttpdExecutorMode.valueOf(prop.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				log(ERROR, "Invalid HTTP server executor: " + prop);
+				throw new InitializationException(e);
+			}
+		}
+		httpdThreads = Integer.getInteger("multiyggdrasil.httpdThreads", 16);
+		httpdQueueSize = Integer.getInteger("multiyggdrasil.httpdQueueSize", 64);
+		if (httpdThreads <= 0 || httpdQueueSize <= 0) {
+			log(ERROR, "HTTP server threads and queue size must be positive");
+			throw new InitializationException();
+		}
+	}
+
 	static void init() {
 		initDebugOptions();
 		initIgnoredPackages();
 		initMojangProxy();
+		initHttpdExecutor();
 
 		mojangNamespace = parseFeatureOption("authlibinjector.mojangNamespace");
 		mojangYggdrasilService = parseFeatureOption("multiyggdrasil.mojangYggdrasilService");
@@ -169,7 +217,29 @@ public final class Config {
 		noLogFile = System.getProperty("authlibinjector.noLogFile") != null;
 		priorityVerifyingCustomName = System.getProperty("multiyggdrasil.priorityVerifyingCustomName") != null;
 		noNamespaceSuffix = System.getProperty("multiyggdrasil.noNamespaceSuffix") != null;
+		skipUnmatchedJars = System.getProperty("multiyggdrasil.skipUnmatchedJars") != null;
+		jdkHttpd = System.getProperty("multiyggdrasil.jdkHttpd") != null;
+		inProcessApi = System.getProperty("multiyggdrasil.inProcessApi") != null;
+		concurrentHasJoined = System.getProperty("multiyggdrasil.concurrentHasJoined") != null;
 		httpdPort = Integer.getInteger("authlibinjector.httpdPort", 0);
+		upstreamConnectTimeout = Integer.getInteger("multiyggdrasil.connectTimeout", 10000);
+		upstreamReadTimeout = Integer.getInteger("multiyggdrasil.readTimeout", 30000);
+		upstreamThreads = Integer.getInteger("multiyggdrasil.upstreamThreads", 32);
+		uuidCacheSize = Integer.getInteger("multiyggdrasil.uuidCacheSize", 4096);
+		uuidCacheTtl = Integer.getInteger("multiyggdrasil.uuidCacheTtl", 300000);
+		uuidCacheNegativeTtl = Integer.getInteger("multiyggdrasil.uuidCacheNegativeTtl", 60000);
+		uuidQueryDeadline = Integer.getInteger("multiyggdrasil.uuidQueryDeadline", 5000);
+		customUUIDQueryBatchSize = Integer.getInteger("multiyggdrasil.customUUIDQueryBatchSize", 0);
+		uuidQueryConcurrency = Integer.getInteger("multiyggdrasil.uuidQueryConcurrency", 4);
+		uuidBatchWindow = Integer.getInteger("multiyggdrasil.uuidBatchWindow", 0);
+		profileCacheSize = Integer.getInteger("multiyggdrasil.profileCacheSize", 4 * 1024 * 1024);
+		profileCacheTtl = Integer.getInteger("multiyggdrasil.profileCacheTtl", 60000);
+		profileCacheStaleTtl = Integer.getInteger("multiyggdrasil.profileCacheStaleTtl", 600000);
 		namespace = System.getProperty("multiyggdrasil.namespace");
+
+		String transformCacheProp = System.getProperty("multiyggdrasil.transformCache");
+		if (transformCacheProp != null && !transformCacheProp.isEmpty()) {
+			transformCacheDir = Paths.get(transformCacheProp).toAbsolutePath();
+		}
 	}
 }
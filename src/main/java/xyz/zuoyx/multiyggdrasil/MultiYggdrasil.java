@@ -39,7 +39,10 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
@@ -47,6 +50,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import xyz.zuoyx.multiyggdrasil.httpd.DefaultURLRedirector;
 import xyz.zuoyx.multiyggdrasil.httpd.LegacySkinAPIFilter;
@@ -90,6 +96,7 @@ public final class MultiYggdrasil {
 	private static Instrumentation instrumentation;
 	private static boolean retransformSupported;
 	private static ClassTransformer classTransformer;
+	private static List<YggdrasilClient> yggdrasilClients = emptyList();
 
 	public static synchronized void bootstrap(Instrumentation instrumentation, String apiUrl) throws InitializationException {
 		if (booted) {
@@ -238,6 +245,7 @@ public final class MultiYggdrasil {
 
 		YggdrasilClient customClient = new YggdrasilClient(new CustomYggdrasilAPIProvider(config));
 		YggdrasilClient mojangClient = new YggdrasilClient(new MojangYggdrasilAPIProvider(), Config.mojangProxy);
+		yggdrasilClients = List.of(customClient, mojangClient);
 
 		boolean legacySkinPolyfillDefault = !Boolean.TRUE.equals(asBoolean(config.getMeta().get("feature.legacy_skin_api")));
 		if (Config.legacySkinPolyfill.isEnabled(legacySkinPolyfillDefault)) {
@@ -293,7 +301,7 @@ public final class MultiYggdrasil {
 	}
 
 	private static ClassTransformer createTransformer(APIMetadata config) {
-		URLProcessor urlProcessor = new URLProcessor(createFilters(config), new DefaultURLRedirector(config));
+		URLProcessor urlProcessor = new URLProcessor(createFilters(config), new DefaultURLRedirector(config), Config.inProcessApi);
 
 		ClassTransformer transformer = new ClassTransformer();
 		transformer.setIgnores(Config.ignoredPackages);
@@ -303,36 +311,72 @@ public final class MultiYggdrasil {
 		}
 
 		if (Config.authlibLogging) {
-			transformer.units.add(new AuthlibLogInterceptor());
+			transformer.addUnit(new AuthlibLogInterceptor());
 		}
 
-		transformer.units.add(new MainArgumentsTransformer());
-		transformer.units.add(new ConstantURLTransformUnit(urlProcessor));
-		transformer.units.add(new CitizensTransformer());
-		transformer.units.add(new HasJoinedServerTransformer());
-		transformer.units.add(new HasJoinedServerResponseTransformer());
+		transformer.addUnit(new MainArgumentsTransformer());
+		transformer.addUnit(new ConstantURLTransformUnit(urlProcessor));
+		transformer.addUnit(new CitizensTransformer());
+		transformer.addUnit(new HasJoinedServerTransformer());
+		transformer.addUnit(new HasJoinedServerResponseTransformer());
 
 		boolean usernameCheckDefault = Boolean.TRUE.equals(asBoolean(config.getMeta().get("feature.username_check")));
 		if (Config.usernameCheck.isEnabled(usernameCheckDefault)) {
 			log(INFO, "Username check is enforced");
 		} else {
-			transformer.units.add(new BungeeCordAllowedCharactersTransformer());
-			transformer.units.add(new UsernameCharacterCheckTransformer());
-			transformer.units.add(new PaperUsernameCheckTransformer());
+			transformer.addUnit(new BungeeCordAllowedCharactersTransformer());
+			transformer.addUnit(new UsernameCharacterCheckTransformer());
+			transformer.addUnit(new PaperUsernameCheckTransformer());
 		}
 
-		transformer.units.add(new SkinWhitelistTransformUnit());
+		transformer.addUnit(new SkinWhitelistTransformUnit());
 		SkinWhitelistTransformUnit.getWhitelistedDomains().addAll(config.getSkinDomains());
 
-		transformer.units.add(new YggdrasilKeyTransformUnit());
+		transformer.addUnit(new YggdrasilKeyTransformUnit());
 		config.getDecodedPublickey().ifPresent(YggdrasilKeyTransformUnit.PUBLIC_KEYS::add);
-		transformer.units.add(new VelocityProfileKeyTransformUnit());
-		transformer.units.add(new BungeeCordProfileKeyTransformUnit());
+		transformer.addUnit(new VelocityProfileKeyTransformUnit());
+		transformer.addUnit(new BungeeCordProfileKeyTransformUnit());
 		MainArgumentsTransformer.getArgumentsListeners().add(new AccountTypeTransformer()::transform);
 
+		if (Config.transformCacheDir != null) {
+			transformer.enableCache(Config.transformCacheDir, describeTransformEnvironment(config));
+		}
+		if (Config.skipUnmatchedJars) {
+			transformer.enableCodeSourceFilter();
+		}
+
 		return transformer;
 	}
 
+	/**
+	 * Describes everything besides the transform units that the transformation results depend on.
+	 */
+	private static String describeTransformEnvironment(APIMetadata config) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(MultiYggdrasil.class.getPackage().getImplementationVersion()).append('\n');
+
+		// development builds share the same version
+		CodeSource codeSource = MultiYggdrasil.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null) {
+			try {
+				Path agentPath = Paths.get(codeSource.getLocation().toURI());
+				sb.append(Files.size(agentPath)).append(' ').append(Files.getLastModifiedTime(agentPath)).append('\n');
+			} catch (URISyntaxException | IOException | IllegalArgumentException e) {
+				log(DEBUG, "Unable to locate agent: " + e);
+			}
+		}
+
+		Set<String> properties = new TreeSet<>(System.getProperties().stringPropertyNames());
+		for (String key : properties) {
+			if (key.startsWith("authlibinjector.") || key.startsWith("multiyggdrasil.")) {
+				sb.append(key).append('=').append(System.getProperty(key)).append('\n');
+			}
+		}
+
+		sb.append(config);
+		return sb.toString();
+	}
+
 	public static void retransformClasses(String... classNames) {
 		if (!retransformSupported) {
 			return;
@@ -352,43 +396,94 @@ public final class MultiYggdrasil {
 		}
 	}
 
+	private static final int RETRANSFORM_BATCH_SIZE = 64;
+	private static final long RETRANSFORM_PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+	/**
+	 * Retransforms the loaded classes that may need to be transformed, which is required when launched from agentmain.
+	 * <p>
+	 * The classes are retransformed in small batches, so that each batch only pauses the application briefly.
+	 * The authlib classes go first, as they are the most important ones.
+	 */
 	public static void retransformAllClasses() {
 		if (!retransformSupported) {
 			return;
 		}
 		log(INFO, "Attempt to retransform all classes");
-		long t0 = System.currentTimeMillis();
-
-		Class<?>[] classes = Stream.of(instrumentation.getAllLoadedClasses())
-				.filter(MultiYggdrasil::canRetransformClass)
-				.toArray(Class[]::new);
-		if (classes.length > 0) {
+		long t0 = System.nanoTime();
+
+		Class<?>[] loaded = instrumentation.getAllLoadedClasses();
+		// reading and scanning the class files is the slow part, and mayTransform() is thread-safe
+		List<Class<?>> filtered = Arrays.stream(loaded).parallel()
+				.filter(clazz -> canRetransformClass(clazz) && classTransformer.mayTransform(clazz.getName(), () -> readClassFile(clazz)))
+				.collect(Collectors.toList());
+		List<Class<?>> priority = new ArrayList<>();
+		List<Class<?>> others = new ArrayList<>();
+		for (Class<?> clazz : filtered) {
+			if (clazz.getName().startsWith("com.mojang.authlib.")) {
+				priority.add(clazz);
+			} else {
+				others.add(clazz);
+			}
+		}
+		List<Class<?>> candidates = new ArrayList<>(priority);
+		candidates.addAll(others);
+
+		long t1 = System.nanoTime();
+		log(INFO, "Found " + candidates.size() + " of " + loaded.length + " loaded classes to retransform in " + (t1 - t0) / 1_000_000 + "ms");
+
+		int batches = (candidates.size() + RETRANSFORM_BATCH_SIZE - 1) / RETRANSFORM_BATCH_SIZE;
+		int failures = 0;
+		int retransformed = 0;
+		long longestBatch = 0;
+		long lastProgress = t1;
+		for (int i = 0; i < batches; i++) {
+			List<Class<?>> batch = candidates.subList(i * RETRANSFORM_BATCH_SIZE, Math.min(candidates.size(), (i + 1) * RETRANSFORM_BATCH_SIZE));
+			long b0 = System.nanoTime();
 			try {
-				instrumentation.retransformClasses(classes);
+				instrumentation.retransformClasses(batch.toArray(new Class<?>[0]));
 			} catch (Throwable e) {
-				log(WARNING, "Failed to retransform", e);
-				return;
+				log(WARNING, "Failed to retransform " + batch, e);
+				failures++;
+			}
+			long b1 = System.nanoTime();
+			classTransformer.performanceMetrics.recordRetransformBatch(batch.size(), b1 - b0);
+			longestBatch = Math.max(longestBatch, b1 - b0);
+			log(DEBUG, "Retransformed batch " + (i + 1) + "/" + batches + " (" + batch.size() + " classes) in " + (b1 - b0) / 1_000_000 + "ms");
+			retransformed += batch.size();
+			if (b1 - lastProgress >= RETRANSFORM_PROGRESS_INTERVAL && i + 1 < batches) {
+				log(INFO, "Retransformed " + retransformed + " of " + candidates.size() + " classes so far, " + (b1 - t1) / 1_000_000 + "ms");
+				lastProgress = b1;
 			}
 		}
 
-		long t1 = System.currentTimeMillis();
-		log(INFO, "Retransformed " + classes.length + " classes in " + (t1 - t0) + "ms");
+		long t2 = System.nanoTime();
+		log(INFO, "Retransformed " + candidates.size() + " classes in " + batches + " batches, " + (t2 - t1) / 1_000_000 + "ms"
+				+ " (longest batch " + longestBatch / 1_000_000 + "ms" + (failures == 0 ? "" : ", " + failures + " failed") + ")");
+	}
+
+	private static /* nullable */ byte[] readClassFile(Class<?> clazz) {
+		ClassLoader loader = clazz.getClassLoader();
+		String resource = clazz.getName().replace('.', '/') + ".class";
+		try (InputStream in = loader == null ? ClassLoader.getSystemResourceAsStream(resource) : loader.getResourceAsStream(resource)) {
+			return in == null ? null : asBytes(in);
+		} catch (IOException e) {
+			return null;
+		}
 	}
 
 	private static boolean canRetransformClass(Class<?> clazz) {
 		if (!instrumentation.isModifiableClass(clazz)) {
 			return false;
 		}
-		String name = clazz.getName();
-		for (String prefix : Config.ignoredPackages) {
-			if (name.startsWith(prefix)) {
-				return false;
-			}
-		}
-		return true;
+		return !classTransformer.isIgnored(clazz.getName());
 	}
 
 	public static ClassTransformer getClassTransformer() {
 		return classTransformer;
 	}
+
+	public static List<YggdrasilClient> getYggdrasilClients() {
+		return yggdrasilClients;
+	}
 }
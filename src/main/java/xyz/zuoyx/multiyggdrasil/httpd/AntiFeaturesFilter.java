@@ -18,9 +18,7 @@ package xyz.zuoyx.multiyggdrasil.httpd;
 
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_JSON;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
-import java.io.IOException;
-import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
+import java.util.List;
 
 /**
  * Disables Mojang's anti-features.
@@ -32,22 +30,15 @@ public class AntiFeaturesFilter implements URLFilter {
 	private static final String RESPONSE_PRIVACY_BLOCKLIST = "{\"blockedProfiles\":[]}";
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("api.minecraftservices.com") || domain.equals("sessionserver.mojang.com");
-	}
-
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (domain.equals("api.minecraftservices.com") && path.equals("/privileges") && exchange.getRequestMethod().equals("GET")) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PRIVILEGES.getBytes());
-		} else if (domain.equals("api.minecraftservices.com") && path.equals("/player/attributes") && exchange.getRequestMethod().equals("GET")) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PLAYER_ATTRIBUTES.getBytes());
-		} else if (domain.equals("api.minecraftservices.com") && path.equals("/privacy/blocklist") && exchange.getRequestMethod().equals("GET")) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PRIVACY_BLOCKLIST.getBytes());
-		} else if (domain.equals("sessionserver.mojang.com") && path.equals("/blockedservers") && exchange.getRequestMethod().equals("GET")) {
-			sendResponse(exchange, 404, null, null);
-		} else {
-			throw new UnsupportedURLException();
-		}
+	public List<Route> getRoutes() {
+		return List.of(
+				Route.get("api.minecraftservices.com", "/privileges",
+						(exchange, params) -> sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PRIVILEGES.getBytes())),
+				Route.get("api.minecraftservices.com", "/player/attributes",
+						(exchange, params) -> sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PLAYER_ATTRIBUTES.getBytes())),
+				Route.get("api.minecraftservices.com", "/privacy/blocklist",
+						(exchange, params) -> sendResponse(exchange, 200, CONTENT_TYPE_JSON, RESPONSE_PRIVACY_BLOCKLIST.getBytes())),
+				Route.get("sessionserver.mojang.com", "/blockedservers",
+						(exchange, params) -> sendResponse(exchange, 404, null, null)));
 	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import xyz.zuoyx.multiyggdrasil.Config;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.UpstreamExecutor;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
+
+/**
+ * Queries the UUIDs of names that belong to different servers, one batch per server, concurrently.
+ * <p>
+ * Each server has to answer within {@link Config#uuidQueryDeadline}, so a slow server doesn't hold up
+ * the others. The names of a server that misses the deadline are left out of the result.
+ */
+public final class ConcurrentUUIDQuery {
+
+	@FunctionalInterface
+	public interface ResultMapper {
+		/**
+		 * Puts a found name into the result, in the form the client asked for.
+		 */
+		void put(Map<String, UUID> result, String name, UUID uuid);
+	}
+
+	public final class Batch {
+		private final YggdrasilClient client;
+		private final ResultMapper mapper;
+		private final Set<String> names = new LinkedHashSet<>();
+		// lower-cased name -> name in the correct case
+		private final Map<String, String> foundNames = new HashMap<>();
+		private Map<String, UUID> found = Map.of();
+
+		private Batch(YggdrasilClient client, ResultMapper mapper) {
+			this.client = client;
+			this.mapper = mapper;
+		}
+
+		public void add(String name) {
+			names.add(name);
+			requestOrder.add(this);
+			requestNames.add(name);
+		}
+
+		private void complete(Map<String, UUID> result) {
+			found = result;
+			result.keySet().forEach(name -> foundNames.put(name.toLowerCase(Locale.ROOT), name));
+		}
+	}
+
+	private final List<Batch> batches = new ArrayList<>();
+	private final List<Batch> requestOrder = new ArrayList<>();
+	private final List<String> requestNames = new ArrayList<>();
+
+	public Batch batch(YggdrasilClient client, ResultMapper mapper) {
+		Batch batch = new Batch(client, mapper);
+		batches.add(batch);
+		return batch;
+	}
+
+	/**
+	 * @return the UUIDs of the found names, in the order they were added
+	 */
+	public Map<String, UUID> execute() throws UncheckedIOException, InterruptedIOException {
+		List<Batch> pending = new ArrayList<>();
+		for (Batch batch : batches) {
+			if (!batch.names.isEmpty()) {
+				pending.add(batch);
+			}
+		}
+
+		if (pending.size() == 1) {
+			// nothing to wait for concurrently
+			Batch batch = pending.get(0);
+			batch.complete(batch.client.queryUUIDs(batch.names));
+		} else if (pending.size() > 1) {
+			executeConcurrently(pending);
+		}
+
+		Map<String, UUID> result = new LinkedHashMap<>();
+		for (int i = 0; i < requestNames.size(); i++) {
+			Batch batch = requestOrder.get(i);
+			String name = batch.foundNames.get(requestNames.get(i).toLowerCase(Locale.ROOT));
+			if (name != null) {
+				batch.mapper.put(result, name, batch.found.get(name));
+			}
+		}
+		return result;
+	}
+
+	private void executeConcurrently(List<Batch> pending) throws InterruptedIOException {
+		long start = System.nanoTime();
+		List</* nullable */ Future<Map<String, UUID>>> futures = new ArrayList<>();
+		for (Batch batch : pending) {
+			Future<Map<String, UUID>> future;
+			try {
+				future = UpstreamExecutor.get().submit(() -> batch.client.queryUUIDs(batch.names));
+			} catch (RejectedExecutionException e) {
+				// running it here would leave it without a deadline, and hold up the other batches
+				log(WARNING, "Querying " + batch.names.size() + " UUIDs at [" + batch.client.getApiProvider()
+						+ "] skipped, all the upstream threads are busy, they're left out of the result");
+				future = null;
+			}
+			futures.add(future);
+		}
+		try {
+			for (int i = 0; i < pending.size(); i++) {
+				Batch batch = pending.get(i);
+				Future<Map<String, UUID>> future = futures.get(i);
+				if (future == null)
+					continue;
+				try {
+					if (Config.uuidQueryDeadline > 0) {
+						long remaining = TimeUnit.MILLISECONDS.toNanos(Config.uuidQueryDeadline) - (System.nanoTime() - start);
+						batch.complete(future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS));
+					} else {
+						batch.complete(future.get());
+					}
+				} catch (TimeoutException e) {
+					log(WARNING, "Querying " + batch.names.size() + " UUIDs at [" + batch.client.getApiProvider() + "] timed out after "
+							+ Config.uuidQueryDeadline + "ms, they're left out of the result");
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException runtimeException)
+						throw runtimeException;
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while querying UUIDs");
+		} finally {
+			// Late queries are left running rather than interrupted: other callers may be waiting
+			// for the same query, and its result still goes into the cache.
+			for (Future<?> future : futures) {
+				if (future != null) {
+					future.cancel(false);
+				}
+			}
+		}
+	}
+}
@@ -20,19 +20,33 @@ import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_JSON;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
 import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.toJsonString;
 import java.io.IOException;
+import java.util.function.Supplier;
 import com.sun.net.httpserver.HttpExchange;
 import com.google.gson.JsonObject;
 import xyz.zuoyx.multiyggdrasil.MultiYggdrasil;
+import xyz.zuoyx.multiyggdrasil.transform.ClassTransformer;
+import xyz.zuoyx.multiyggdrasil.transform.LatencyHistogram;
 import xyz.zuoyx.multiyggdrasil.transform.PerformanceMetrics;
+import xyz.zuoyx.multiyggdrasil.transform.TransformUnit;
+import xyz.zuoyx.multiyggdrasil.transform.UnitMetrics;
+import xyz.zuoyx.multiyggdrasil.util.ExpiringCache;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 
 /**
  * MultiYggdrasil's debug API
  */
 public class DebugApiEndpoint {
 
+	private final Supplier</* nullable */ HttpdExecutor> httpdExecutor;
+
+	public DebugApiEndpoint(Supplier</* nullable */ HttpdExecutor> httpdExecutor) {
+		this.httpdExecutor = httpdExecutor;
+	}
+
 	public void serve(HttpExchange exchange) throws IOException {
 		if (exchange.getRequestURI().getPath().equals("/debug/metrics") && exchange.getRequestMethod().equals("GET")) {
-			PerformanceMetrics metrics = MultiYggdrasil.getClassTransformer().performanceMetrics;
+			ClassTransformer transformer = MultiYggdrasil.getClassTransformer();
+			PerformanceMetrics metrics = transformer.performanceMetrics;
 			JsonObject response = new JsonObject();
 			response.addProperty("totalTime", metrics.getTotalTime());
 			response.addProperty("matchTime", metrics.getMatchTime());
@@ -40,9 +54,85 @@ public class DebugApiEndpoint {
 			response.addProperty("analysisTime", metrics.getAnalysisTime());
 			response.addProperty("classesScanned", metrics.getClassesScanned());
 			response.addProperty("classesSkipped", metrics.getClassesSkipped());
+			response.addProperty("classesFiltered", metrics.getClassesFiltered());
+			response.addProperty("classesSkippedByCodeSource", metrics.getClassesSkippedByCodeSource());
+			response.addProperty("cacheHits", metrics.getCacheHits());
+			response.addProperty("cacheMisses", metrics.getCacheMisses());
+			response.addProperty("classesRetransformed", metrics.getClassesRetransformed());
+			response.addProperty("retransformBatches", metrics.getRetransformBatches());
+			response.addProperty("retransformTime", metrics.getRetransformTime());
+			response.addProperty("retransformMaxBatchTime", metrics.getRetransformMaxBatchTime());
+
+			JsonObject units = new JsonObject();
+			for (TransformUnit unit : transformer.getUnits()) {
+				units.add(unit.toString(), serializeUnitMetrics(metrics.getUnitMetrics(unit)));
+			}
+			response.add("units", units);
+
+			HttpdExecutor executor = httpdExecutor.get();
+			if (executor != null) {
+				JsonObject httpd = new JsonObject();
+				httpd.addProperty("executor", executor.getMode().name().toLowerCase());
+				httpd.addProperty("activeCount", executor.getActiveCount());
+				httpd.addProperty("queueDepth", executor.getQueueDepth());
+				httpd.addProperty("rejected", executor.getRejectedCount());
+				response.add("httpd", httpd);
+			}
+
+			JsonObject yggdrasil = new JsonObject();
+			for (YggdrasilClient client : MultiYggdrasil.getYggdrasilClients()) {
+				JsonObject clientMetrics = new JsonObject();
+				clientMetrics.add("uuidCache", serializeCache(client.getUUIDCache()));
+				clientMetrics.add("profileCache", serializeCache(client.getProfileCache()));
+				clientMetrics.addProperty("coalescedQueries", client.getCoalescedQueries());
+				yggdrasil.add(client.getApiProvider().toString(), clientMetrics);
+			}
+			response.add("yggdrasil", yggdrasil);
+
 			sendResponse(exchange, 200, CONTENT_TYPE_JSON, toJsonString(response).getBytes());
 		} else {
 			sendResponse(exchange, 404, null, null);
 		}
 	}
+
+	private static JsonObject serializeUnitMetrics(UnitMetrics metrics) {
+		long invocations = metrics.getInvocations();
+		long matched = metrics.getMatched();
+		long modified = metrics.getModified();
+		JsonObject result = new JsonObject();
+		result.addProperty("invocations", invocations);
+		result.addProperty("matched", matched);
+		result.addProperty("modified", modified);
+		result.addProperty("matchRate", invocations == 0 ? 0 : (double) matched / invocations);
+		result.addProperty("modificationRate", invocations == 0 ? 0 : (double) modified / invocations);
+		result.add("visitorTime", serializeHistogram(metrics.getVisitorTime()));
+		return result;
+	}
+
+	private static JsonObject serializeCache(ExpiringCache<?, ?> cache) {
+		JsonObject result = new JsonObject();
+		result.addProperty("size", cache.size());
+		result.addProperty("weight", cache.getWeight());
+		result.addProperty("hits", cache.getHits());
+		result.addProperty("misses", cache.getMisses());
+		result.addProperty("evictions", cache.getEvictions());
+		return result;
+	}
+
+	/**
+	 * Serializes the non-empty buckets, keyed by their exclusive upper bounds in nanoseconds.
+	 */
+	private static JsonObject serializeHistogram(LatencyHistogram histogram) {
+		JsonObject buckets = new JsonObject();
+		long[] counts = histogram.getCounts();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				buckets.addProperty(String.valueOf(LatencyHistogram.getUpperBound(i)), counts[i]);
+			}
+		}
+		JsonObject result = new JsonObject();
+		result.addProperty("total", histogram.getSum());
+		result.add("buckets", buckets);
+		return result;
+	}
 }
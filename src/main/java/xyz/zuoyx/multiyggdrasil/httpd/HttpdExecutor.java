@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_TEXT;
+import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.INFO;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import xyz.zuoyx.multiyggdrasil.Config;
+import xyz.zuoyx.multiyggdrasil.Config.HttpdExecutorMode;
+
+/**
+ * Runs the exchanges of the local HTTP server.
+ * <p>
+ * In bounded mode, the exchanges that don't fit in the queue are shed: they're handed to a single
+ * separate thread, and {@link #loadSheddingFilter()} answers them with 503 without calling the handler.
+ * The shed exchanges wait in a queue of the same length. Beyond that, the execution is rejected,
+ * and the server closes the connection without a response.
+ */
+public final class HttpdExecutor implements Executor {
+
+	private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+
+	public static HttpdExecutor create(/* nullable */ HttpdExecutorMode mode, int threads, int queueSize) {
+		if (mode == null)
+			mode = HttpdExecutorMode.CACHED;
+		switch (mode) {
+			case VIRTUAL -> {
+				ExecutorService virtual = newVirtualThreadExecutor();
+				if (virtual != null) {
+					log(INFO, "HTTP server uses virtual threads");
+					return new HttpdExecutor(mode, virtual, null, 0);
+				}
+				log(WARNING, "Virtual threads aren't available on Java " + Runtime.version().feature() + ", falling back to a cached thread pool");
+				return new HttpdExecutor(HttpdExecutorMode.CACHED, Executors.newCachedThreadPool(), null, 0);
+			}
+			case BOUNDED -> {
+				ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+						new ArrayBlockingQueue<>(queueSize), daemonThreads("MultiYggdrasil-httpd-"));
+				pool.allowCoreThreadTimeOut(true);
+				log(INFO, "HTTP server uses " + threads + " threads, with a queue of " + queueSize);
+				return new HttpdExecutor(mode, pool, pool, queueSize);
+			}
+			default -> {
+				return new HttpdExecutor(mode, Executors.newCachedThreadPool(), null, 0);
+			}
+		}
+	}
+
+	public static HttpdExecutor create() {
+		return create(Config.httpdExecutor, Config.httpdThreads, Config.httpdQueueSize);
+	}
+
+	// Java 21+
+	private static /* nullable */ ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private final HttpdExecutorMode mode;
+	private final ExecutorService delegate;
+	private final /* nullable */ ThreadPoolExecutor boundedPool;
+	private final /* nullable */ ThreadPoolExecutor shedder;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+
+	private HttpdExecutor(HttpdExecutorMode mode, ExecutorService delegate, /* nullable */ ThreadPoolExecutor boundedPool, int shedQueueSize) {
+		this.mode = mode;
+		this.delegate = delegate;
+		this.boundedPool = boundedPool;
+		if (boundedPool == null) {
+			this.shedder = null;
+		} else {
+			this.shedder = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(shedQueueSize), daemonThreads("MultiYggdrasil-httpd-shedder-"));
+			shedder.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		try {
+			delegate.execute(() -> {
+				active.incrementAndGet();
+				try {
+					command.run();
+				} finally {
+					active.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if (shedder == null)
+				throw e;
+			rejected.increment();
+			// the exchange still has to be read before it can be answered,
+			// if too many are waiting for that, this throws again and the server drops the connection
+			shedder.execute(() -> {
+				SHEDDING.set(Boolean.TRUE);
+				try {
+					command.run();
+				} finally {
+					SHEDDING.remove();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Answers the shed exchanges with 503.
+	 */
+	public Filter loadSheddingFilter() {
+		return new Filter() {
+			@Override
+			public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+				if (SHEDDING.get() == null) {
+					chain.doFilter(exchange);
+					return;
+				}
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				sendResponse(exchange, 503, CONTENT_TYPE_TEXT, "Service Unavailable".getBytes());
+			}
+
+			@Override
+			public String description() {
+				return "Load shedding";
+			}
+		};
+	}
+
+	public HttpdExecutorMode getMode() {
+		return mode;
+	}
+
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public int getQueueDepth() {
+		return boundedPool == null ? 0 : boundedPool.getQueue().size();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+}
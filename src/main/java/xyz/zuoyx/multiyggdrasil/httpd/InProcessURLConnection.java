@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+/**
+ * A connection to the local API that is served on the calling thread, without the loopback HTTP server.
+ * <p>
+ * The request is sent when the response is first asked for, and the response is buffered in memory.
+ * Errors are reported the way {@link HttpURLConnection} reports them, since the callers are written for it.
+ */
+final class InProcessURLConnection extends HttpURLConnection {
+
+	private final URLProcessor processor;
+
+	private Headers requestHeaders; // set on connect
+	private /* nullable */ ByteArrayOutputStream requestBody;
+
+	private /* nullable */ byte[] responseBody; // set once the request is served
+	private List<String> responseFieldKeys;
+	private List<String> responseFieldValues;
+
+	InProcessURLConnection(URL url, URLProcessor processor) {
+		super(url);
+		this.processor = processor;
+	}
+
+	@Override
+	public void connect() {
+		if (connected)
+			return;
+		// the request properties can't be read once connected
+		requestHeaders = new Headers();
+		getRequestProperties().forEach((name, values) -> {
+			if (name != null)
+				requestHeaders.put(name, new ArrayList<>(values));
+		});
+		connected = true;
+	}
+
+	@Override
+	public void disconnect() {
+	}
+
+	@Override
+	public boolean usingProxy() {
+		return false;
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		if (!doOutput)
+			throw new ProtocolException("cannot write to a URLConnection if doOutput=false - call setDoOutput(true)");
+		if (responseBody != null)
+			throw new ProtocolException("Cannot write output after reading input.");
+		// the same as HttpURLConnection
+		if (method.equals("GET"))
+			method = "POST";
+		connect();
+		if (requestBody == null)
+			requestBody = new ByteArrayOutputStream();
+		return requestBody;
+	}
+
+	private void serve() throws IOException {
+		if (responseBody != null)
+			return;
+		connect();
+
+		URI uri;
+		try {
+			uri = new URI(url.getFile());
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid URL: " + url, e);
+		}
+		byte[] body = requestBody == null ? new byte[0] : requestBody.toByteArray();
+		if (requestBody != null)
+			requestHeaders.set("Content-Length", Integer.toString(body.length));
+
+		Exchange exchange = new Exchange(uri, method, requestHeaders, body);
+		processor.handleLocalRequest(exchange);
+		if (exchange.responseCode == -1)
+			throw new IOException("No response is sent for " + url);
+
+		responseCode = exchange.responseCode;
+		responseMessage = NioHttpServer.reasonPhrase(responseCode);
+		byte[] content = exchange.responseBody.toByteArray();
+		if (content.length > 0)
+			exchange.responseHeaders.set("Content-length", Integer.toString(content.length));
+
+		responseFieldKeys = new ArrayList<>();
+		responseFieldValues = new ArrayList<>();
+		responseFieldKeys.add(null);
+		responseFieldValues.add("HTTP/1.1 " + responseCode + " " + responseMessage);
+		exchange.responseHeaders.forEach((name, values) -> values.forEach(value -> {
+			responseFieldKeys.add(name);
+			responseFieldValues.add(value);
+		}));
+		responseBody = content;
+	}
+
+	@Override
+	public int getResponseCode() throws IOException {
+		serve();
+		return responseCode;
+	}
+
+	@Override
+	public String getResponseMessage() throws IOException {
+		serve();
+		return responseMessage;
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		if (!doInput)
+			throw new ProtocolException("Cannot read from URLConnection if doInput=false (call setDoInput(true))");
+		serve();
+		if (responseCode >= 400) {
+			if (responseCode == 404 || responseCode == 410)
+				throw new FileNotFoundException(url.toString());
+			throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+		}
+		return new ByteArrayInputStream(responseBody);
+	}
+
+	@Override
+	public /* nullable */ InputStream getErrorStream() {
+		if (responseBody == null || responseCode < 400)
+			return null;
+		return new ByteArrayInputStream(responseBody);
+	}
+
+	private boolean tryServe() {
+		try {
+			serve();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public /* nullable */ String getHeaderField(String name) {
+		if (!tryServe())
+			return null;
+		String value = null;
+		for (int i = 1; i < responseFieldKeys.size(); i++) {
+			if (responseFieldKeys.get(i).equalsIgnoreCase(name))
+				value = responseFieldValues.get(i);
+		}
+		return value;
+	}
+
+	@Override
+	public /* nullable */ String getHeaderField(int n) {
+		if (!tryServe() || n < 0 || n >= responseFieldValues.size())
+			return null;
+		return responseFieldValues.get(n);
+	}
+
+	@Override
+	public /* nullable */ String getHeaderFieldKey(int n) {
+		if (!tryServe() || n < 0 || n >= responseFieldKeys.size())
+			return null;
+		return responseFieldKeys.get(n);
+	}
+
+	@Override
+	public Map<String, List<String>> getHeaderFields() {
+		if (!tryServe())
+			return Collections.emptyMap();
+		Map<String, List<String>> fields = new LinkedHashMap<>();
+		for (int i = 0; i < responseFieldKeys.size(); i++)
+			fields.computeIfAbsent(responseFieldKeys.get(i), k -> new ArrayList<>()).add(responseFieldValues.get(i));
+		fields.replaceAll((name, values) -> Collections.unmodifiableList(values));
+		return Collections.unmodifiableMap(fields);
+	}
+
+	private static final class Exchange extends HttpExchange {
+
+		private final URI uri;
+		private final String method;
+		private final Headers requestHeaders;
+		private InputStream requestBody;
+		private final Headers responseHeaders = new Headers();
+		private final ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+		private OutputStream responseStream = responseBody;
+		private final Map<String, Object> attributes = new HashMap<>();
+		private int responseCode = -1;
+
+		Exchange(URI uri, String method, Headers requestHeaders, byte[] requestBody) {
+			this.uri = uri;
+			this.method = method;
+			this.requestHeaders = requestHeaders;
+			this.requestBody = new ByteArrayInputStream(requestBody);
+		}
+
+		@Override
+		public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+			if (responseCode != -1)
+				throw new IOException("Headers already sent");
+			responseCode = rCode;
+		}
+
+		@Override
+		public Headers getRequestHeaders() {
+			return requestHeaders;
+		}
+
+		@Override
+		public Headers getResponseHeaders() {
+			return responseHeaders;
+		}
+
+		@Override
+		public URI getRequestURI() {
+			return uri;
+		}
+
+		@Override
+		public String getRequestMethod() {
+			return method;
+		}
+
+		@Override
+		public HttpContext getHttpContext() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public InputStream getRequestBody() {
+			return requestBody;
+		}
+
+		@Override
+		public OutputStream getResponseBody() {
+			return responseStream;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			return null;
+		}
+
+		@Override
+		public int getResponseCode() {
+			return responseCode;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return null;
+		}
+
+		@Override
+		public String getProtocol() {
+			return "HTTP/1.1";
+		}
+
+		@Override
+		public Object getAttribute(String name) {
+			return attributes.get(name);
+		}
+
+		@Override
+		public void setAttribute(String name, Object value) {
+			attributes.put(name, value);
+		}
+
+		@Override
+		public void setStreams(InputStream i, OutputStream o) {
+			if (i != null)
+				requestBody = i;
+			if (o != null)
+				responseStream = o;
+		}
+
+		@Override
+		public HttpPrincipal getPrincipal() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.net.spi.URLStreamHandlerProvider;
+
+/**
+ * Provides the handler of the {@value URLProcessor#IN_PROCESS_PROTOCOL} URLs.
+ * <p>
+ * This is loaded by {@link java.util.ServiceLoader} from the system class loader, which the agent jar is
+ * appended to, so it doesn't conflict with the {@link java.net.URLStreamHandlerFactory} a launcher may have set.
+ */
+public final class InProcessURLStreamHandlerProvider extends URLStreamHandlerProvider {
+
+	private static volatile /* nullable */ URLProcessor processor;
+
+	/**
+	 * Routes the {@value URLProcessor#IN_PROCESS_PROTOCOL} URLs to the given processor.
+	 *
+	 * @return false if the URLs can't be resolved in this JVM
+	 */
+	static boolean install(URLProcessor urlProcessor) {
+		processor = urlProcessor;
+		try {
+			new URL(URLProcessor.IN_PROCESS_PROTOCOL + "://localhost/");
+			return true;
+		} catch (MalformedURLException e) {
+			processor = null;
+			return false;
+		}
+	}
+
+	private static final class Handler extends URLStreamHandler {
+
+		@Override
+		protected URLConnection openConnection(URL url) {
+			URLProcessor target = processor;
+			if (target == null)
+				throw new IllegalStateException("In-process URLs aren't enabled");
+			return new InProcessURLConnection(url, target);
+		}
+
+		@Override
+		protected URLConnection openConnection(URL url, Proxy proxy) {
+			// nothing goes through the network
+			return openConnection(url);
+		}
+	}
+
+	@Override
+	public /* nullable */ URLStreamHandler createURLStreamHandler(String protocol) {
+		if (URLProcessor.IN_PROCESS_PROTOCOL.equals(protocol))
+			return new Handler();
+		return null;
+	}
+}
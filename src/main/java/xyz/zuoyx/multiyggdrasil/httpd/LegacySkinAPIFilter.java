@@ -31,20 +31,17 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import xyz.zuoyx.multiyggdrasil.util.JsonUtils;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 
 public class LegacySkinAPIFilter implements URLFilter {
 
-	private static final Pattern PATH_SKINS = Pattern.compile("^/MinecraftSkins/(?<username>[^/]+)\\.png$");
-
 	private YggdrasilClient upstream;
 
 	public LegacySkinAPIFilter(YggdrasilClient upstream) {
@@ -52,18 +49,12 @@ public class LegacySkinAPIFilter implements URLFilter {
 	}
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("skins.minecraft.net");
+	public List<Route> getRoutes() {
+		return List.of(new Route("skins.minecraft.net", Route.ANY_METHOD, "/MinecraftSkins/{username}.png", this::handleSkin));
 	}
 
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (!domain.equals("skins.minecraft.net"))
-			throw new UnsupportedURLException();
-		Matcher matcher = PATH_SKINS.matcher(path);
-		if (!matcher.find())
-			throw new UnsupportedURLException();
-		String username = matcher.group("username");
+	private void handleSkin(HttpExchange exchange, Map<String, String> params) throws IOException {
+		String username = params.get("username");
 
 		// Minecraft does not encode non-ASCII characters in URLs
 		// We have to workaround this problem
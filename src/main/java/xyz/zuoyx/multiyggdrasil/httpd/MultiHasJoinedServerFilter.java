@@ -23,15 +23,21 @@ import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.ERROR;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
+import xyz.zuoyx.multiyggdrasil.Config;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.GameProfile;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.NamespacedID;
-import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilAPIProvider;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.UpstreamExecutor;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.MojangYggdrasilAPIProvider;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilResponseBuilder;
@@ -40,51 +46,130 @@ public class MultiHasJoinedServerFilter implements URLFilter {
 
     private YggdrasilClient[] clients;
     private String namespace;
+    private boolean concurrent;
 
     public MultiHasJoinedServerFilter(YggdrasilClient[] clients) {
-        this.clients = clients;
+        this(clients, null);
     }
 
     public MultiHasJoinedServerFilter(YggdrasilClient[] clients, String namespace) {
+        this(clients, namespace, Config.concurrentHasJoined);
+    }
+
+    public MultiHasJoinedServerFilter(YggdrasilClient[] clients, /* nullable */ String namespace, boolean concurrent) {
         this.clients = clients;
         this.namespace = namespace;
+        this.concurrent = concurrent;
     }
 
     @Override
-    public boolean canHandle(String domain) {
-        return domain.equals("sessionserver.mojang.com");
+    public List<Route> getRoutes() {
+        return List.of(Route.get("sessionserver.mojang.com", "/session/minecraft/hasJoined", this::handleHasJoined));
     }
 
-    @Override
-    public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-        if (domain.equals("sessionserver.mojang.com") && path.equals("/session/minecraft/hasJoined") && exchange.getRequestMethod().equals("GET")) {
-            Map<String, String> params = parseQueryParams(exchange.getRequestURI().getQuery());
+    private void handleHasJoined(HttpExchange exchange, Map<String, String> pathParams) throws IOException {
+        Map<String, String> params = parseQueryParams(exchange.getRequestURI().getQuery());
+
+        Optional<GameProfile> response = verify(params.get("username"), params.get("serverId"), params.get("ip"));
+
+        if (response.isPresent()) {
+            sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.hasJoinedServer(response.get()));
+        } else {
+            sendResponse(exchange, 204, null, null);
+        }
+    }
+
+    /**
+     * Asks the servers in the order of priority. The first positive answer wins,
+     * and the servers that can't be reached are skipped.
+     */
+    public Optional<GameProfile> verify(String username, String serverId, String ip) throws InterruptedIOException {
+        return concurrent ? verifyConcurrently(username, serverId, ip) : verifySequentially(username, serverId, ip);
+    }
 
-            Optional<GameProfile> response = Optional.empty();
-            for (YggdrasilClient client : clients) {
-                YggdrasilAPIProvider apiProvider = client.getApiProvider();
+    private Optional<GameProfile> verifySequentially(String username, String serverId, String ip) {
+        for (YggdrasilClient client : clients) {
+            Optional<GameProfile> response;
+            try {
+                response = client.hasJoinedServer(username, serverId, ip);
+            } catch (UncheckedIOException e) {
+                logVerificationError(username, client, e);
+                continue;
+            }
+            if (response.isPresent()) {
+                return response.map(profile -> applyNamespace(client, profile));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Queries all the servers at once. The answers are still taken in the order of priority:
+     * a server's positive answer wins only once all the servers before it have answered negatively.
+     * <p>
+     * The server of highest priority is asked on the calling thread, the others on the upstream threads.
+     * If those are all busy, the servers that didn't get one are asked on the calling thread, in turn.
+     */
+    private Optional<GameProfile> verifyConcurrently(String username, String serverId, String ip) throws InterruptedIOException {
+        List</* nullable */ Future<Optional<GameProfile>>> futures = new ArrayList<>(clients.length);
+        futures.add(null);
+        for (int i = 1; i < clients.length; i++) {
+            YggdrasilClient client = clients[i];
+            Future<Optional<GameProfile>> future;
+            try {
+                future = UpstreamExecutor.get().submit(() -> client.hasJoinedServer(username, serverId, ip));
+            } catch (RejectedExecutionException e) {
+                future = null;
+            }
+            futures.add(future);
+        }
+
+        try {
+            for (int i = 0; i < clients.length; i++) {
+                Future<Optional<GameProfile>> future = futures.get(i);
+                Optional<GameProfile> response;
                 try {
-                    response = client.hasJoinedServer(params.get("username"), params.get("serverId"), params.get("ip"));
+                    response = future == null
+                            ? clients[i].hasJoinedServer(username, serverId, ip)
+                            : future.get();
                 } catch (UncheckedIOException e) {
-                    log(ERROR, "An error occurred while verifying username [ " + params.get("username") + " ] at [ " + apiProvider + " ]:\n" +
-                            e.getCause());
+                    logVerificationError(username, clients[i], e);
                     continue;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof UncheckedIOException ioException) {
+                        logVerificationError(username, clients[i], ioException);
+                        continue;
+                    }
+                    throw new IllegalStateException(e.getCause());
                 }
                 if (response.isPresent()) {
-                    if (namespace != null && !(apiProvider instanceof MojangYggdrasilAPIProvider)) {
-                        response.ifPresent(profile -> profile.name = new NamespacedID(profile.name, namespace).toString());
-                    }
-                    break;
+                    YggdrasilClient winner = clients[i];
+                    return response.map(profile -> applyNamespace(winner, profile));
                 }
             }
-
-            if (response.isPresent()) {
-                sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.hasJoinedServer(response.get()).getBytes());
-            } else {
-                sendResponse(exchange, 204, null, null);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while verifying username [ " + username + " ]");
+        } finally {
+            // the answers of lower priority aren't needed any more
+            for (Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
             }
-        } else {
-            throw new UnsupportedURLException();
         }
     }
+
+    private GameProfile applyNamespace(YggdrasilClient client, GameProfile profile) {
+        if (namespace != null && !(client.getApiProvider() instanceof MojangYggdrasilAPIProvider)) {
+            profile.name = new NamespacedID(profile.name, namespace).toString();
+        }
+        return profile;
+    }
+
+    private static void logVerificationError(String username, YggdrasilClient client, UncheckedIOException e) {
+        log(ERROR, "An error occurred while verifying username [ " + username + " ] at [ " + client.getApiProvider() + " ]:\n" +
+                e.getCause());
+    }
 }
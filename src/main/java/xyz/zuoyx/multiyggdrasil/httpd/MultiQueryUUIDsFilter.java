@@ -23,13 +23,13 @@ import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
 import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.asJsonString;
 import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.parseJson;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.InterruptedIOException;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.NamespacedID;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilResponseBuilder;
@@ -47,25 +47,22 @@ public class MultiQueryUUIDsFilter implements URLFilter {
 	}
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("api.mojang.com");
+	public List<Route> getRoutes() {
+		return List.of(Route.post("api.mojang.com", "/profiles/minecraft", this::handleQueryUUIDs));
 	}
 
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (domain.equals("api.mojang.com") && path.equals("/profiles/minecraft") && exchange.getRequestMethod().equals("POST")) {
-			Set<String> request = new LinkedHashSet<>();
-			parseJson(asString(asBytes(exchange.getRequestBody()))).getAsJsonArray()
-					.forEach(element -> request.add(asJsonString(element)));
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.queryUUIDs(performQuery(request)).getBytes());
-		} else {
-			throw new UnsupportedURLException();
-		}
+	private void handleQueryUUIDs(HttpExchange exchange, Map<String, String> params) throws IOException {
+		Set<String> request = new LinkedHashSet<>();
+		parseJson(asString(asBytes(exchange.getRequestBody()))).getAsJsonArray()
+				.forEach(element -> request.add(asJsonString(element)));
+		sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.queryUUIDs(performQuery(request)));
 	}
 
-	private Map<String, UUID> performQuery(Set<String> names) {
-		Set<String> customNames = new LinkedHashSet<>();
-		Set<String> mojangNames = new LinkedHashSet<>();
+	private Map<String, UUID> performQuery(Set<String> names) throws InterruptedIOException {
+		ConcurrentUUIDQuery query = new ConcurrentUUIDQuery();
+		ConcurrentUUIDQuery.Batch mojangNames = query.batch(mojangClient, Map::put);
+		ConcurrentUUIDQuery.Batch customNames = query.batch(customClient,
+				(result, name, uuid) -> result.put(new NamespacedID(name, namespace).toString(), uuid));
 		names.forEach(name -> {
 			NamespacedID namespacedID = NamespacedID.parse(name);
 			if (namespacedID.isMojangName()) {
@@ -74,15 +71,6 @@ public class MultiQueryUUIDsFilter implements URLFilter {
 				customNames.add(namespacedID.getId());
 			}
 		});
-
-		Map<String, UUID> result = new LinkedHashMap<>();
-		if (!mojangNames.isEmpty()) {
-			result.putAll(mojangClient.queryUUIDs(mojangNames));
-		}
-		if (!customNames.isEmpty()) {
-			customClient.queryUUIDs(customNames)
-					.forEach((name, uuid) -> result.put(new NamespacedID(name, namespace).toString(), uuid));
-		}
-		return result;
+		return query.execute();
 	}
 }
@@ -0,0 +1,1094 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.DEBUG;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * A minimal HTTP/1.1 server for the loopback API.
+ * <p>
+ * A single selector thread accepts connections and reads request heads into pooled direct buffers.
+ * Once a head is complete, the connection is handed to the executor, which runs the handler and
+ * writes the response on the same thread, straight to the channel. Requests pipelined behind it are
+ * served in order by the same task before the connection goes back to the selector.
+ * A connection that doesn't complete its next request head within the idle timeout is closed.
+ * <p>
+ * Handlers see an ordinary {@link HttpExchange}, so they work with both this server and the JDK one.
+ */
+public final class NioHttpServer {
+
+	private static final int BUFFER_SIZE = 16 * 1024; // also the limit of a request head
+	private static final int MAX_POOLED_BUFFERS = 64;
+	private static final int MAX_DRAINED_BODY = 64 * 1024;
+	private static final long IO_TIMEOUT = 30_000;
+	private static final long ACCEPT_BACKOFF = 100;
+	// the same property as the JDK server, in seconds
+	private static final long IDLE_TIMEOUT = Long.getLong("sun.net.httpserver.idleInterval", 30) * 1000;
+	private static final long IDLE_CHECK_INTERVAL = Math.max(1, Math.min(1000, IDLE_TIMEOUT));
+
+	private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+	private static final Queue<Selector> TEMPORARY_SELECTORS = new ConcurrentLinkedQueue<>();
+
+	private static ByteBuffer acquireBuffer() {
+		ByteBuffer buf = BUFFERS.poll();
+		return buf == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buf.clear();
+	}
+
+	private static void releaseBuffer(ByteBuffer buf) {
+		if (BUFFERS.size() < MAX_POOLED_BUFFERS)
+			BUFFERS.offer(buf);
+	}
+
+	public static NioHttpServer create(InetSocketAddress address, Executor executor, HttpHandler handler) throws IOException {
+		ServerSocketChannel serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			Selector selector = Selector.open();
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			return new NioHttpServer(serverChannel, selector, executor, handler);
+		} catch (IOException | RuntimeException e) {
+			serverChannel.close();
+			throw e;
+		}
+	}
+
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final Executor executor;
+	private final HttpHandler handler;
+	private final InetSocketAddress address;
+	private final Queue<Connection> resumed = new ConcurrentLinkedQueue<>();
+
+	// accessed by the selector thread only
+	private long acceptPausedUntil; // 0 if accepting
+	private boolean acceptFailing;
+	private long nextIdleCheck;
+
+	private NioHttpServer(ServerSocketChannel serverChannel, Selector selector, Executor executor, HttpHandler handler) throws IOException {
+		this.serverChannel = serverChannel;
+		this.selector = selector;
+		this.executor = executor;
+		this.handler = handler;
+		this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	public void start() {
+		Thread thread = new Thread(this::run, "MultiYggdrasil-httpd-selector");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void run() {
+		SelectionKey acceptKey = serverChannel.keyFor(selector);
+		for (;;) {
+			try {
+				long now = System.currentTimeMillis();
+				if (acceptPausedUntil != 0 && now >= acceptPausedUntil) {
+					acceptPausedUntil = 0;
+					acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+				}
+				if (now >= nextIdleCheck) {
+					closeIdleConnections(now);
+					nextIdleCheck = now + IDLE_CHECK_INTERVAL;
+				}
+				long wakeup = acceptPausedUntil == 0 ? nextIdleCheck : Math.min(acceptPausedUntil, nextIdleCheck);
+				selector.select(Math.max(1, wakeup - now));
+				Connection resumedConnection;
+				while ((resumedConnection = resumed.poll()) != null) {
+					resumedConnection.resume();
+				}
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept(acceptKey);
+					} else if (key.isReadable()) {
+						((Connection) key.attachment()).onReadable();
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				log(WARNING, "HTTP server has stopped", e);
+				return;
+			} catch (IOException | RuntimeException e) {
+				// the open connections are still to be served
+				log(WARNING, "An error occurred in the HTTP server", e);
+			}
+		}
+	}
+
+	private void accept(SelectionKey acceptKey) {
+		for (;;) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			} catch (IOException e) {
+				// most likely out of file descriptors, stop accepting for a while instead of spinning on it
+				log(acceptFailing ? DEBUG : WARNING, "Failed to accept HTTP connection", e);
+				acceptFailing = true;
+				acceptKey.interestOps(0);
+				acceptPausedUntil = System.currentTimeMillis() + ACCEPT_BACKOFF;
+				return;
+			}
+			if (channel == null)
+				return;
+			acceptFailing = false;
+
+			Connection connection = null;
+			try {
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				connection = new Connection(channel);
+				connection.key = channel.register(selector, 0, connection);
+				connection.awaitRequest();
+			} catch (IOException e) {
+				// e.g. reset by the peer already
+				log(DEBUG, "Failed to set up HTTP connection: " + e);
+				if (connection != null) {
+					connection.close();
+				} else {
+					try {
+						channel.close();
+					} catch (IOException e1) {
+						// ignored
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the connections that have been waiting for a request for too long, releasing their buffers.
+	 * The connections being served are left alone.
+	 */
+	private void closeIdleConnections(long now) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.isValid() && key.attachment() instanceof Connection connection
+					&& key.interestOps() == SelectionKey.OP_READ && now >= connection.idleDeadline) {
+				log(DEBUG, "Closing idle HTTP connection");
+				connection.close();
+			}
+		}
+	}
+
+	private static void await(SocketChannel channel, int op) throws IOException {
+		Selector temporary = TEMPORARY_SELECTORS.poll();
+		if (temporary == null)
+			temporary = Selector.open();
+		try {
+			SelectionKey key = channel.register(temporary, op);
+			int ready = temporary.select(IO_TIMEOUT);
+			key.cancel();
+			temporary.selectNow();
+			if (ready == 0)
+				throw new SocketTimeoutException();
+		} finally {
+			TEMPORARY_SELECTORS.offer(temporary);
+		}
+	}
+
+	private static final String[] COMMON_METHODS = { "GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "PATCH" };
+	private static final String HTTP_1_0 = "HTTP/1.0";
+	private static final String HTTP_1_1 = "HTTP/1.1";
+
+	private static final long NO_CONTENT_LENGTH = -1;
+	private static final long INVALID_CONTENT_LENGTH = -2;
+
+	/**
+	 * Only the headers needed to frame the request are looked at while parsing the head.
+	 * The others are kept as bytes, and parsed if the handler asks for them.
+	 */
+	private static final class Request {
+		final String method;
+		final URI uri;
+		final String protocol;
+
+		long contentLength = NO_CONTENT_LENGTH;
+		boolean chunked;
+		boolean connectionClose;
+		boolean expectContinue;
+
+		private byte[] headerLines; // separated by CRLF
+		private /* nullable */ Headers headers;
+
+		Request(String method, URI uri, String protocol) {
+			this.method = method;
+			this.uri = uri;
+			this.protocol = protocol;
+		}
+
+		Headers headers() {
+			if (headers == null) {
+				headers = new Headers();
+				byte[] lines = headerLines;
+				int lineStart = 0;
+				while (lineStart < lines.length) {
+					int lineEnd = lineStart;
+					while (lineEnd < lines.length && !(lines[lineEnd] == '\r' && lineEnd + 1 < lines.length && lines[lineEnd + 1] == '\n'))
+						lineEnd++;
+					int colon = lineStart;
+					while (lines[colon] != ':')
+						colon++;
+					headers.add(new String(lines, lineStart, colon - lineStart, ISO_8859_1),
+							new String(lines, colon + 1, lineEnd - colon - 1, ISO_8859_1).trim());
+					lineStart = lineEnd + 2;
+				}
+				headerLines = null;
+			}
+			return headers;
+		}
+	}
+
+	private static final class BadRequestException extends Exception {
+		final int status;
+
+		BadRequestException(int status) {
+			super(null, null, false, false);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Owned by the selector thread while waiting for a request, and by a worker thread while serving it.
+	 */
+	private final class Connection {
+
+		final SocketChannel channel;
+		SelectionKey key;
+		long idleDeadline; // accessed by the selector thread only
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		// in read mode: the unconsumed bytes are between position and limit
+		final ByteBuffer in = acquireBuffer().limit(0);
+		final ByteBuffer out = acquireBuffer();
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void onReadable() {
+			try {
+				in.compact();
+				int read = channel.read(in);
+				in.flip();
+				if (read == -1) {
+					close();
+					return;
+				}
+				dispatch();
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		void resume() {
+			if (closed.get())
+				return;
+			// the next request may have arrived while the previous one was served
+			if (!dispatch() && !closed.get())
+				awaitRequest();
+		}
+
+		/**
+		 * Hands the connection back to the selector, until the next request head is complete.
+		 */
+		void awaitRequest() {
+			idleDeadline = System.currentTimeMillis() + IDLE_TIMEOUT;
+			key.interestOps(SelectionKey.OP_READ);
+		}
+
+		/**
+		 * @return true if the connection has been handed to the executor
+		 */
+		private boolean dispatch() {
+			Request request;
+			try {
+				request = parseHead();
+			} catch (BadRequestException e) {
+				rejectAndClose(e.status);
+				return false;
+			}
+			if (request == null)
+				return false;
+			key.interestOps(0);
+			try {
+				executor.execute(() -> serve(request));
+			} catch (RejectedExecutionException e) {
+				close();
+			}
+			return true;
+		}
+
+		private void serve(Request first) {
+			Request request = first;
+			try {
+				for (;;) {
+					if (!serveOne(request)) {
+						close();
+						return;
+					}
+					// pipelined requests are answered in order
+					try {
+						request = parseHead();
+					} catch (BadRequestException e) {
+						rejectAndClose(e.status);
+						return;
+					}
+					if (request == null)
+						break;
+				}
+			} catch (IOException e) {
+				log(DEBUG, "HTTP connection closed: " + e);
+				close();
+				return;
+			}
+			resumed.offer(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * @return whether the connection can be kept alive
+		 */
+		private boolean serveOne(Request request) throws IOException {
+			Exchange exchange = new Exchange(this, request);
+			try {
+				handler.handle(exchange);
+			} catch (Throwable e) {
+				log(WARNING, "An error occurred while processing request [" + request.uri + "]", e);
+				return false;
+			}
+			return exchange.finish();
+		}
+
+		/* nullable */ Request parseHead() throws BadRequestException {
+			int start = in.position();
+			int end = -1;
+			for (int i = start; i + 3 < in.limit(); i++) {
+				if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+					end = i;
+					break;
+				}
+			}
+			if (end == -1) {
+				if (in.limit() - start >= in.capacity())
+					throw new BadRequestException(431);
+				return null;
+			}
+
+			int lineEnd = indexOfCRLF(start, end);
+			int sp1 = indexOf(' ', start, lineEnd);
+			int sp2 = sp1 == -1 ? -1 : indexOf(' ', sp1 + 1, lineEnd);
+			if (sp2 == -1)
+				throw new BadRequestException(400);
+			String method = null;
+			for (String common : COMMON_METHODS) {
+				if (regionEquals(start, sp1, common, false)) {
+					method = common;
+					break;
+				}
+			}
+			if (method == null)
+				method = ascii(start, sp1);
+			String protocol;
+			if (regionEquals(sp2 + 1, lineEnd, HTTP_1_1, false)) {
+				protocol = HTTP_1_1;
+			} else if (regionEquals(sp2 + 1, lineEnd, HTTP_1_0, false)) {
+				protocol = HTTP_1_0;
+			} else {
+				protocol = ascii(sp2 + 1, lineEnd);
+				if (!protocol.startsWith("HTTP/1."))
+					throw new BadRequestException(505);
+			}
+			URI uri;
+			try {
+				uri = new URI(ascii(sp1 + 1, sp2));
+			} catch (URISyntaxException e) {
+				throw new BadRequestException(400);
+			}
+			Request request = new Request(method, uri, protocol);
+
+			boolean seenTransferEncoding = false;
+			boolean seenConnection = false;
+			boolean seenExpect = false;
+			int headersStart = Math.min(lineEnd + 2, end);
+			int lineStart = headersStart;
+			while (lineStart < end) {
+				lineEnd = indexOfCRLF(lineStart, end);
+				int colon = indexOf(':', lineStart, lineEnd);
+				if (colon <= lineStart)
+					throw new BadRequestException(400);
+				int valueStart = colon + 1;
+				int valueEnd = lineEnd;
+				// the same as String.trim()
+				while (valueStart < valueEnd && (in.get(valueStart) & 0xff) <= ' ')
+					valueStart++;
+				while (valueEnd > valueStart && (in.get(valueEnd - 1) & 0xff) <= ' ')
+					valueEnd--;
+
+				// the first one counts, like Headers.getFirst()
+				if (request.contentLength == NO_CONTENT_LENGTH && regionEquals(lineStart, colon, "content-length", true)) {
+					request.contentLength = parseContentLength(valueStart, valueEnd);
+				} else if (!seenTransferEncoding && regionEquals(lineStart, colon, "transfer-encoding", true)) {
+					seenTransferEncoding = true;
+					request.chunked = regionEquals(valueStart, valueEnd, "chunked", true);
+				} else if (!seenConnection && regionEquals(lineStart, colon, "connection", true)) {
+					seenConnection = true;
+					request.connectionClose = regionEquals(valueStart, valueEnd, "close", true);
+				} else if (!seenExpect && regionEquals(lineStart, colon, "expect", true)) {
+					seenExpect = true;
+					request.expectContinue = regionEquals(valueStart, valueEnd, "100-continue", true);
+				}
+				lineStart = lineEnd + 2;
+			}
+			// the input buffer is reused for the body and the next request, so the header lines are copied out
+			request.headerLines = new byte[end - headersStart];
+			in.get(headersStart, request.headerLines);
+			in.position(end + 4);
+			return request;
+		}
+
+		/**
+		 * @param lowerCase whether the region is compared case-insensitively, in which case str must be in lower case
+		 */
+		private boolean regionEquals(int from, int to, String str, boolean lowerCase) {
+			if (to - from != str.length())
+				return false;
+			for (int i = 0; i < str.length(); i++) {
+				int b = in.get(from + i);
+				if (lowerCase && b >= 'A' && b <= 'Z')
+					b += 'a' - 'A';
+				if (b != str.charAt(i))
+					return false;
+			}
+			return true;
+		}
+
+		private long parseContentLength(int from, int to) {
+			// a longer length isn't going to be accepted anyway
+			if (from == to || to - from > 18)
+				return INVALID_CONTENT_LENGTH;
+			long length = 0;
+			for (int i = from; i < to; i++) {
+				int b = in.get(i);
+				if (b < '0' || b > '9')
+					return INVALID_CONTENT_LENGTH;
+				length = length * 10 + (b - '0');
+			}
+			return length;
+		}
+
+		private int indexOf(char c, int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (in.get(i) == c)
+					return i;
+			}
+			return -1;
+		}
+
+		private int indexOfCRLF(int from, int end) {
+			for (int i = from; i < end; i++) {
+				if (in.get(i) == '\r' && in.get(i + 1) == '\n')
+					return i;
+			}
+			return end;
+		}
+
+		private String ascii(int from, int to) {
+			byte[] bytes = new byte[to - from];
+			in.get(from, bytes);
+			return new String(bytes, ISO_8859_1);
+		}
+
+		/**
+		 * Reads more bytes into the input buffer, waiting for them if necessary.
+		 *
+		 * @return false at the end of the stream
+		 */
+		boolean fill() throws IOException {
+			in.compact();
+			try {
+				int read;
+				while ((read = channel.read(in)) == 0) {
+					await(channel, SelectionKey.OP_READ);
+				}
+				return read != -1;
+			} finally {
+				in.flip();
+			}
+		}
+
+		void flushOut() throws IOException {
+			out.flip();
+			while (out.hasRemaining()) {
+				if (channel.write(out) == 0)
+					await(channel, SelectionKey.OP_WRITE);
+			}
+			out.clear();
+		}
+
+		void putAscii(String str) throws IOException {
+			for (int i = 0; i < str.length(); i++) {
+				if (!out.hasRemaining())
+					flushOut();
+				out.put((byte) str.charAt(i));
+			}
+		}
+
+		void put(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (!out.hasRemaining())
+					flushOut();
+				int n = Math.min(len, out.remaining());
+				out.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void rejectAndClose(int status) {
+			try {
+				out.clear();
+				putAscii("HTTP/1.1 " + status + " " + reasonPhrase(status) + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+				flushOut();
+			} catch (IOException e) {
+				// closing anyway
+			}
+			close();
+		}
+
+		void close() {
+			if (!closed.compareAndSet(false, true))
+				return;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignored
+			}
+			releaseBuffer(in);
+			releaseBuffer(out);
+		}
+	}
+
+	private final class Exchange extends HttpExchange {
+
+		private final Connection connection;
+		private final Request request;
+		private final Headers responseHeaders = new Headers();
+		private final Map<String, Object> attributes = new HashMap<>();
+		private InputStream requestBody;
+		private OutputStream responseBody;
+		private int responseCode = -1;
+		private boolean keepAlive;
+		private boolean continuePending;
+
+		Exchange(Connection connection, Request request) {
+			this.connection = connection;
+			this.request = request;
+			if (HTTP_1_0.equals(request.protocol)) {
+				keepAlive = false;
+			} else {
+				keepAlive = !request.connectionClose;
+				continuePending = request.expectContinue;
+			}
+
+			if (request.chunked) {
+				requestBody = new ChunkedRequestBody();
+			} else {
+				long length = request.contentLength;
+				if (length == NO_CONTENT_LENGTH) {
+					length = 0;
+				} else if (length == INVALID_CONTENT_LENGTH) {
+					keepAlive = false;
+					length = 0;
+				}
+				requestBody = new FixedRequestBody(length);
+			}
+		}
+
+		/**
+		 * Tells the client to send the body it's holding back, once the handler starts reading it.
+		 */
+		private void sendContinue() throws IOException {
+			continuePending = false;
+			// the client doesn't expect it after the final response
+			if (responseCode == -1) {
+				connection.putAscii("HTTP/1.1 100 Continue\r\n\r\n");
+				connection.flushOut();
+			}
+		}
+
+		/**
+		 * Completes the response after the handler has returned.
+		 *
+		 * @return whether the connection can be kept alive
+		 */
+		boolean finish() throws IOException {
+			if (responseCode == -1) {
+				log(WARNING, "No response is sent for request [" + request.uri + "]");
+				return false;
+			}
+			responseBody.close();
+			if (!(responseBody instanceof ResponseBody responseStream) || !responseStream.isComplete())
+				return false;
+			if (!keepAlive)
+				return false;
+			// the client may or may not send the body it was holding back
+			if (continuePending)
+				return false;
+			// skip what the handler didn't read, so the next request can be parsed
+			return requestBody instanceof RequestBody requestStream && requestStream.drain();
+		}
+
+		@Override
+		public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+			if (responseCode != -1)
+				throw new IOException("Headers already sent");
+			responseCode = rCode;
+
+			boolean noBody = rCode == 204 || rCode == 304 || (rCode >= 100 && rCode < 200) || request.method.equals("HEAD");
+			if (noBody) {
+				responseHeaders.remove("Content-length");
+				responseBody = new FixedResponseBody(0);
+			} else if (responseLength > 0) {
+				responseHeaders.set("Content-length", Long.toString(responseLength));
+				responseBody = new FixedResponseBody(responseLength);
+			} else if (responseLength == 0) {
+				responseHeaders.set("Transfer-encoding", "chunked");
+				responseBody = new ChunkedResponseBody();
+			} else {
+				responseHeaders.set("Content-length", "0");
+				responseBody = new FixedResponseBody(0);
+			}
+			responseHeaders.set("Date", currentDate());
+			if (!keepAlive)
+				responseHeaders.set("Connection", "close");
+
+			Connection c = connection;
+			c.putAscii("HTTP/1.1 " + rCode + " " + reasonPhrase(rCode) + "\r\n");
+			for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+				for (String value : header.getValue()) {
+					c.putAscii(header.getKey());
+					c.putAscii(": ");
+					c.putAscii(value);
+					c.putAscii("\r\n");
+				}
+			}
+			c.putAscii("\r\n");
+			// small responses are written together with the head
+		}
+
+		@Override
+		public Headers getRequestHeaders() {
+			return request.headers();
+		}
+
+		@Override
+		public Headers getResponseHeaders() {
+			return responseHeaders;
+		}
+
+		@Override
+		public URI getRequestURI() {
+			return request.uri;
+		}
+
+		@Override
+		public String getRequestMethod() {
+			return request.method;
+		}
+
+		@Override
+		public HttpContext getHttpContext() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+			try {
+				if (responseBody != null)
+					responseBody.close();
+			} catch (IOException e) {
+				connection.close();
+			}
+		}
+
+		@Override
+		public InputStream getRequestBody() {
+			return requestBody;
+		}
+
+		@Override
+		public OutputStream getResponseBody() {
+			return responseBody;
+		}
+
+		@Override
+		public InetSocketAddress getRemoteAddress() {
+			try {
+				return (InetSocketAddress) connection.channel.getRemoteAddress();
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public int getResponseCode() {
+			return responseCode;
+		}
+
+		@Override
+		public InetSocketAddress getLocalAddress() {
+			return address;
+		}
+
+		@Override
+		public String getProtocol() {
+			return request.protocol;
+		}
+
+		@Override
+		public Object getAttribute(String name) {
+			return attributes.get(name);
+		}
+
+		@Override
+		public void setAttribute(String name, Object value) {
+			attributes.put(name, value);
+		}
+
+		@Override
+		public void setStreams(InputStream i, OutputStream o) {
+			if (i != null)
+				requestBody = i;
+			if (o != null)
+				responseBody = o;
+		}
+
+		@Override
+		public com.sun.net.httpserver.HttpPrincipal getPrincipal() {
+			return null;
+		}
+
+		private abstract class RequestBody extends InputStream {
+
+			/**
+			 * @return false if the rest of the body is too large to skip
+			 */
+			abstract boolean drain() throws IOException;
+
+			int readRaw(byte[] b, int off, int len) throws IOException {
+				if (continuePending)
+					sendContinue();
+				ByteBuffer in = connection.in;
+				if (!in.hasRemaining() && !connection.fill())
+					throw new IOException("Unexpected end of request body");
+				int n = Math.min(len, in.remaining());
+				in.get(b, off, n);
+				return n;
+			}
+
+			int readRaw() throws IOException {
+				if (continuePending)
+					sendContinue();
+				ByteBuffer in = connection.in;
+				if (!in.hasRemaining() && !connection.fill())
+					throw new IOException("Unexpected end of request body");
+				return in.get() & 0xff;
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+			}
+		}
+
+		private final class FixedRequestBody extends RequestBody {
+			private long remaining;
+
+			FixedRequestBody(long length) {
+				this.remaining = length;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (remaining == 0)
+					return -1;
+				if (len == 0)
+					return 0;
+				int n = readRaw(b, off, (int) Math.min(len, remaining));
+				remaining -= n;
+				return n;
+			}
+
+			@Override
+			public int available() {
+				return (int) Math.min(remaining, connection.in.remaining());
+			}
+
+			@Override
+			boolean drain() throws IOException {
+				if (remaining > MAX_DRAINED_BODY)
+					return false;
+				byte[] buf = new byte[(int) Math.min(remaining, 4096)];
+				while (read(buf, 0, buf.length) != -1) {
+					// discarded
+				}
+				return true;
+			}
+		}
+
+		private final class ChunkedRequestBody extends RequestBody {
+			private long chunkRemaining;
+			private boolean eof;
+			private long drained;
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (eof)
+					return -1;
+				if (len == 0)
+					return 0;
+				if (chunkRemaining == 0) {
+					chunkRemaining = readChunkSize();
+					if (chunkRemaining == 0) {
+						// trailers
+						while (!readLine().isEmpty()) {
+							// ignored
+						}
+						eof = true;
+						return -1;
+					}
+				}
+				int n = readRaw(b, off, (int) Math.min(len, chunkRemaining));
+				chunkRemaining -= n;
+				if (chunkRemaining == 0 && !readLine().isEmpty())
+					throw new IOException("Malformed chunk");
+				return n;
+			}
+
+			private long readChunkSize() throws IOException {
+				String line = readLine();
+				int semicolon = line.indexOf(';');
+				try {
+					return Long.parseLong((semicolon == -1 ? line : line.substring(0, semicolon)).trim(), 16);
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed chunk size: " + line);
+				}
+			}
+
+			private String readLine() throws IOException {
+				StringBuilder sb = new StringBuilder();
+				for (;;) {
+					int c = readRaw();
+					if (c == '\n')
+						break;
+					if (c != '\r')
+						sb.append((char) c);
+					if (sb.length() > 1024)
+						throw new IOException("Chunk line is too long");
+				}
+				return sb.toString();
+			}
+
+			@Override
+			boolean drain() throws IOException {
+				byte[] buf = new byte[4096];
+				int n;
+				while ((n = read(buf, 0, buf.length)) != -1) {
+					drained += n;
+					if (drained > MAX_DRAINED_BODY)
+						return false;
+				}
+				return true;
+			}
+		}
+
+		private abstract class ResponseBody extends OutputStream {
+			boolean closed;
+
+			abstract boolean isComplete();
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+		}
+
+		private final class FixedResponseBody extends ResponseBody {
+			private long remaining;
+
+			FixedResponseBody(long length) {
+				this.remaining = length;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (closed)
+					throw new IOException("Stream is closed");
+				if (len > remaining)
+					throw new IOException("Too many bytes to write");
+				connection.put(b, off, len);
+				remaining -= len;
+			}
+
+			@Override
+			public void flush() throws IOException {
+				connection.flushOut();
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				connection.flushOut();
+			}
+
+			@Override
+			boolean isComplete() {
+				return remaining == 0;
+			}
+		}
+
+		private final class ChunkedResponseBody extends ResponseBody {
+			private final byte[] chunk = new byte[BUFFER_SIZE / 2];
+			private int count;
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (closed)
+					throw new IOException("Stream is closed");
+				while (len > 0) {
+					int n = Math.min(len, chunk.length - count);
+					System.arraycopy(b, off, chunk, count, n);
+					count += n;
+					off += n;
+					len -= n;
+					if (count == chunk.length)
+						writeChunk();
+				}
+			}
+
+			private void writeChunk() throws IOException {
+				if (count == 0)
+					return;
+				connection.putAscii(Integer.toHexString(count) + "\r\n");
+				connection.put(chunk, 0, count);
+				connection.putAscii("\r\n");
+				count = 0;
+			}
+
+			@Override
+			public void flush() throws IOException {
+				writeChunk();
+				connection.flushOut();
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				writeChunk();
+				connection.putAscii("0\r\n\r\n");
+				connection.flushOut();
+			}
+
+			@Override
+			boolean isComplete() {
+				return closed;
+			}
+		}
+	}
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.RFC_1123_DATE_TIME;
+	private static volatile String cachedDate = "";
+	private static volatile long cachedDateSecond;
+
+	private static String currentDate() {
+		long second = System.currentTimeMillis() / 1000;
+		if (second != cachedDateSecond) {
+			cachedDate = DATE_FORMAT.format(ZonedDateTime.now(ZoneOffset.UTC));
+			cachedDateSecond = second;
+		}
+		return cachedDate;
+	}
+
+	static String reasonPhrase(int status) {
+		return switch (status) {
+			case 200 -> "OK";
+			case 204 -> "No Content";
+			case 301 -> "Moved Permanently";
+			case 302 -> "Found";
+			case 304 -> "Not Modified";
+			case 400 -> "Bad Request";
+			case 401 -> "Unauthorized";
+			case 403 -> "Forbidden";
+			case 404 -> "Not Found";
+			case 405 -> "Method Not Allowed";
+			case 429 -> "Too Many Requests";
+			case 431 -> "Request Header Fields Too Large";
+			case 500 -> "Internal Server Error";
+			case 502 -> "Bad Gateway";
+			case 503 -> "Service Unavailable";
+			case 504 -> "Gateway Timeout";
+			case 505 -> "HTTP Version Not Supported";
+			default -> "";
+		};
+	}
+}
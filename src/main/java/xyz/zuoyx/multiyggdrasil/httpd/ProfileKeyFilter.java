@@ -20,7 +20,6 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_JSON;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
 import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.toJsonString;
-import java.io.IOException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -28,9 +27,8 @@ import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
-import com.sun.net.httpserver.HttpExchange;
+import java.util.List;
 import com.google.gson.JsonObject;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 
 /**
  * Intercepts Minecraft's request to <a href="https://api.minecraftservices.com/player/certificates">...</a>,
@@ -39,17 +37,9 @@ import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 public class ProfileKeyFilter implements URLFilter {
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("api.minecraftservices.com");
-	}
-
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (domain.equals("api.minecraftservices.com") && path.equals("/player/certificates") && exchange.getRequestMethod().equals("POST")) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, toJsonString(makeDummyResponse()).getBytes());
-		} else {
-			throw new UnsupportedURLException();
-		}
+	public List<Route> getRoutes() {
+		return List.of(Route.post("api.minecraftservices.com", "/player/certificates",
+				(exchange, params) -> sendResponse(exchange, 200, CONTENT_TYPE_JSON, toJsonString(makeDummyResponse()).getBytes())));
 	}
 
 	private JsonObject makeDummyResponse() {
@@ -20,29 +20,19 @@ import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_JSON;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
 import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.toJsonString;
 
-import java.io.IOException;
 import java.security.PublicKey;
 import java.util.Base64;
-import com.sun.net.httpserver.HttpExchange;
+import java.util.List;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import xyz.zuoyx.multiyggdrasil.transform.support.YggdrasilKeyTransformUnit;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 
 public class PublickeysFilter implements URLFilter {
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("api.minecraftservices.com");
-	}
-
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (domain.equals("api.minecraftservices.com") && path.equals("/publickeys") && exchange.getRequestMethod().equals("GET")) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, toJsonString(makePublickeysResponse()).getBytes());
-		} else {
-			throw new UnsupportedURLException();
-		}
+	public List<Route> getRoutes() {
+		return List.of(Route.get("api.minecraftservices.com", "/publickeys",
+				(exchange, params) -> sendResponse(exchange, 200, CONTENT_TYPE_JSON, toJsonString(makePublickeysResponse()).getBytes())));
 	}
 
 	private JsonObject makePublickeysResponse() {
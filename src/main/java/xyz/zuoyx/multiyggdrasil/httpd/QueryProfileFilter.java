@@ -22,21 +22,17 @@ import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
 import static xyz.zuoyx.multiyggdrasil.util.UUIDUtils.fromUnsignedUUID;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
-import xyz.zuoyx.multiyggdrasil.yggdrasil.GameProfile;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilResponseBuilder;
 
 public class QueryProfileFilter implements URLFilter {
 
-	private static final Pattern PATH_REGEX = Pattern.compile("^/session/minecraft/profile/(?<uuid>[0-9a-f]{32})$");
-
 	private YggdrasilClient mojangClient;
 	private YggdrasilClient customClient;
 
@@ -46,48 +42,52 @@ public class QueryProfileFilter implements URLFilter {
 	}
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("sessionserver.mojang.com");
+	public List<Route> getRoutes() {
+		return List.of(new Route("sessionserver.mojang.com", Route.ANY_METHOD, "/session/minecraft/profile/{uuid}", this::handleQueryProfile)
+				.where("uuid", QueryProfileFilter::isUnsignedUUID));
 	}
 
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (!domain.equals("sessionserver.mojang.com"))
-			throw new UnsupportedURLException();
-		Matcher matcher = PATH_REGEX.matcher(path);
-		if (!matcher.find())
-			throw new UnsupportedURLException();
-
+	private void handleQueryProfile(HttpExchange exchange, Map<String, String> params) throws IOException {
 		UUID uuid;
 		try {
-			uuid = fromUnsignedUUID(matcher.group("uuid"));
+			uuid = fromUnsignedUUID(params.get("uuid"));
 		} catch (IllegalArgumentException e) {
 			sendResponse(exchange, 204, null, null);
 			return;
 		}
 
-		boolean withSignature = false;
 		String unsignedValues = parseQueryParams(exchange.getRequestURI().getQuery()).get("unsigned");
-		if (unsignedValues != null && unsignedValues.equals("false")) {
-			withSignature = true;
-		}
+		boolean withSignature = unsignedValues != null && unsignedValues.equals("false");
 
-		Optional<GameProfile> response;
+		Optional<byte[]> response;
 		if (QueryUUIDsFilter.isMaskedUUID(uuid)) {
-			response = mojangClient.queryProfile(QueryUUIDsFilter.unmaskUUID(uuid), withSignature);
-			response.ifPresent(profile -> {
+			response = mojangClient.queryProfileResponse(QueryUUIDsFilter.unmaskUUID(uuid), withSignature, profile -> {
 				profile.id = uuid;
 				profile.name += QueryUUIDsFilter.NAME_SUFFIX;
+				return YggdrasilResponseBuilder.queryProfile(profile, withSignature);
 			});
 		} else {
-			response = customClient.queryProfile(uuid, withSignature);
+			response = customClient.queryProfileResponse(uuid, withSignature,
+					profile -> YggdrasilResponseBuilder.queryProfile(profile, withSignature));
 		}
 
 		if (response.isPresent()) {
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.queryProfile(response.get(), withSignature).getBytes());
+			sendResponse(exchange, 200, CONTENT_TYPE_JSON, response.get());
 		} else {
 			sendResponse(exchange, 204, null, null);
 		}
 	}
 
+	// [0-9a-f]{32}
+	static boolean isUnsignedUUID(String value) {
+		if (value.length() != 32)
+			return false;
+		for (int i = 0; i < 32; i++) {
+			char c = value.charAt(i);
+			if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f'))
+				return false;
+		}
+		return true;
+	}
+
 }
@@ -25,13 +25,13 @@ import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.parseJson;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.InterruptedIOException;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilResponseBuilder;
 
@@ -46,25 +46,22 @@ public class QueryUUIDsFilter implements URLFilter {
 	}
 
 	@Override
-	public boolean canHandle(String domain) {
-		return domain.equals("api.mojang.com");
+	public List<Route> getRoutes() {
+		return List.of(Route.post("api.mojang.com", "/profiles/minecraft", this::handleQueryUUIDs));
 	}
 
-	@Override
-	public void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException {
-		if (domain.equals("api.mojang.com") && path.equals("/profiles/minecraft") && exchange.getRequestMethod().equals("POST")) {
-			Set<String> request = new LinkedHashSet<>();
-			parseJson(asString(asBytes(exchange.getRequestBody()))).getAsJsonArray()
-					.forEach(element -> request.add(asJsonString(element)));
-			sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.queryUUIDs(performQuery(request)).getBytes());
-		} else {
-			throw new UnsupportedURLException();
-		}
+	private void handleQueryUUIDs(HttpExchange exchange, Map<String, String> params) throws IOException {
+		Set<String> request = new LinkedHashSet<>();
+		parseJson(asString(asBytes(exchange.getRequestBody()))).getAsJsonArray()
+				.forEach(element -> request.add(asJsonString(element)));
+		sendResponse(exchange, 200, CONTENT_TYPE_JSON, YggdrasilResponseBuilder.queryUUIDs(performQuery(request)));
 	}
 
-	private Map<String, UUID> performQuery(Set<String> names) {
-		Set<String> customNames = new LinkedHashSet<>();
-		Set<String> mojangNames = new LinkedHashSet<>();
+	private Map<String, UUID> performQuery(Set<String> names) throws InterruptedIOException {
+		ConcurrentUUIDQuery query = new ConcurrentUUIDQuery();
+		ConcurrentUUIDQuery.Batch customNames = query.batch(customClient, Map::put);
+		ConcurrentUUIDQuery.Batch mojangNames = query.batch(mojangClient,
+				(result, name, uuid) -> result.put(name + NAME_SUFFIX, maskUUID(uuid)));
 		names.forEach(name -> {
 			if (name.endsWith(NAME_SUFFIX)) {
 				mojangNames.add(name.substring(0, name.length() - NAME_SUFFIX.length()));
@@ -72,16 +69,7 @@ public class QueryUUIDsFilter implements URLFilter {
 				customNames.add(name);
 			}
 		});
-
-		Map<String, UUID> result = new LinkedHashMap<>();
-		if (!customNames.isEmpty()) {
-			result.putAll(customClient.queryUUIDs(customNames));
-		}
-		if (!mojangNames.isEmpty()) {
-			mojangClient.queryUUIDs(mojangNames)
-					.forEach((name, uuid) -> result.put(name + NAME_SUFFIX, maskUUID(uuid)));
-		}
-		return result;
+		return query.execute();
 	}
 
 	private static final int MSB_MASK = 0x00008000;
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * A request intercepted by a {@link URLFilter}.
+ * <p>
+ * The path pattern is matched segment by segment. A segment is either literal, or contains a parameter
+ * such as {@code {username}.png}, which matches any non-empty text between the literal prefix and suffix.
+ */
+public final class Route {
+
+	public static final String ANY_METHOD = "*";
+
+	@FunctionalInterface
+	public interface Handler {
+		void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+	}
+
+	public static Route get(String domain, String pathPattern, Handler handler) {
+		return new Route(domain, "GET", pathPattern, handler);
+	}
+
+	public static Route post(String domain, String pathPattern, Handler handler) {
+		return new Route(domain, "POST", pathPattern, handler);
+	}
+
+	private final String domain;
+	private final String method;
+	private final String pathPattern;
+	private final Handler handler;
+	private final Map<String, Predicate<String>> constraints = new LinkedHashMap<>();
+
+	public Route(String domain, String method, String pathPattern, Handler handler) {
+		if (!pathPattern.startsWith("/"))
+			throw new IllegalArgumentException("Path pattern must start with '/': " + pathPattern);
+		this.domain = domain;
+		this.method = method;
+		this.pathPattern = pathPattern;
+		this.handler = handler;
+	}
+
+	/**
+	 * Restricts the values of a parameter. Requests with other values aren't routed here.
+	 */
+	public Route where(String param, Predicate<String> constraint) {
+		constraints.merge(param, constraint, Predicate::and);
+		return this;
+	}
+
+	public String getDomain() {
+		return domain;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getPathPattern() {
+		return pathPattern;
+	}
+
+	public Handler getHandler() {
+		return handler;
+	}
+
+	boolean accepts(Map<String, String> params) {
+		for (Map.Entry<String, Predicate<String>> constraint : constraints.entrySet()) {
+			String value = params.get(constraint.getKey());
+			if (value == null || !constraint.getValue().test(value))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + domain + pathPattern;
+	}
+}
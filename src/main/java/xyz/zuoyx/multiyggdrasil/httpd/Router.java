@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.httpd;
+
+import static java.util.Collections.emptyMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches requests to routes, by domain, then by method, then by path segments.
+ * <p>
+ * Literal segments take precedence over parameters. Among routes with the same pattern, the one
+ * added first wins.
+ */
+public final class Router {
+
+	public static final class Match {
+		private final Route route;
+		private final Map<String, String> params;
+
+		Match(Route route, Map<String, String> params) {
+			this.route = route;
+			this.params = params;
+		}
+
+		public Route getRoute() {
+			return route;
+		}
+
+		public Map<String, String> getParams() {
+			return params;
+		}
+	}
+
+	private static final class ParamSegment {
+		final String name;
+		final String prefix;
+		final String suffix;
+		final Node child = new Node();
+
+		ParamSegment(String name, String prefix, String suffix) {
+			this.name = name;
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+		/* nullable */ String extract(String segment) {
+			int length = segment.length() - prefix.length() - suffix.length();
+			if (length <= 0 || !segment.startsWith(prefix) || !segment.endsWith(suffix))
+				return null;
+			return segment.substring(prefix.length(), segment.length() - suffix.length());
+		}
+	}
+
+	private static final class Node {
+		final Map<String, Node> literals = new HashMap<>();
+		final List<ParamSegment> params = new ArrayList<>();
+		final List<Route> routes = new ArrayList<>();
+	}
+
+	// domain -> method -> path
+	private final Map<String, Map<String, Node>> domains = new HashMap<>();
+
+	public Router(List<Route> routes) {
+		routes.forEach(this::add);
+	}
+
+	private void add(Route route) {
+		Node node = domains.computeIfAbsent(route.getDomain(), k -> new HashMap<>())
+				.computeIfAbsent(route.getMethod(), k -> new Node());
+		for (String segment : splitPath(route.getPathPattern())) {
+			int open = segment.indexOf('{');
+			if (open == -1) {
+				node = node.literals.computeIfAbsent(segment, k -> new Node());
+				continue;
+			}
+			int close = segment.indexOf('}', open);
+			if (close == -1)
+				throw new IllegalArgumentException("Unclosed parameter in " + route.getPathPattern());
+			String name = segment.substring(open + 1, close);
+			String prefix = segment.substring(0, open);
+			String suffix = segment.substring(close + 1);
+			ParamSegment param = null;
+			for (ParamSegment existing : node.params) {
+				if (existing.name.equals(name) && existing.prefix.equals(prefix) && existing.suffix.equals(suffix)) {
+					param = existing;
+					break;
+				}
+			}
+			if (param == null) {
+				param = new ParamSegment(name, prefix, suffix);
+				node.params.add(param);
+			}
+			node = param.child;
+		}
+		node.routes.add(route);
+	}
+
+	/**
+	 * Returns true if any route is declared on the given domain.
+	 */
+	public boolean handlesDomain(String domain) {
+		return domains.containsKey(domain);
+	}
+
+	public /* nullable */ Match match(String domain, String method, String path) {
+		Map<String, Node> methods = domains.get(domain);
+		if (methods == null || !path.startsWith("/"))
+			return null;
+		String[] segments = splitPath(path);
+		Match match = null;
+		Node node = methods.get(method);
+		if (node != null)
+			match = match(node, segments, 0, emptyMap());
+		if (match == null && (node = methods.get(Route.ANY_METHOD)) != null)
+			match = match(node, segments, 0, emptyMap());
+		return match;
+	}
+
+	private static /* nullable */ Match match(Node node, String[] segments, int index, Map<String, String> params) {
+		if (index == segments.length) {
+			for (Route route : node.routes) {
+				if (route.accepts(params))
+					return new Match(route, params);
+			}
+			return null;
+		}
+		String segment = segments[index];
+		Node literal = node.literals.get(segment);
+		if (literal != null) {
+			Match match = match(literal, segments, index + 1, params);
+			if (match != null)
+				return match;
+		}
+		for (ParamSegment param : node.params) {
+			String value = param.extract(segment);
+			if (value == null)
+				continue;
+			Map<String, String> newParams = new HashMap<>(params);
+			newParams.put(param.name, value);
+			Match match = match(param.child, segments, index + 1, newParams);
+			if (match != null)
+				return match;
+		}
+		return null;
+	}
+
+	// "/a/b/" -> ["a", "b", ""]
+	private static String[] splitPath(String path) {
+		int count = 0;
+		for (int i = 0; i < path.length(); i++) {
+			if (path.charAt(i) == '/')
+				count++;
+		}
+		String[] segments = new String[count];
+		int start = 1;
+		for (int i = 0; i < count; i++) {
+			int end = path.indexOf('/', start);
+			if (end == -1)
+				end = path.length();
+			segments[i] = path.substring(start, end);
+			start = end + 1;
+		}
+		return segments;
+	}
+}
@@ -16,10 +16,7 @@
  */
 package xyz.zuoyx.multiyggdrasil.httpd;
 
-import java.io.IOException;
-
-import com.sun.net.httpserver.HttpExchange;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
+import java.util.List;
 
 /**
  * A URLFilter filters the URLs in the bytecode, and intercepts those it is interested in.
@@ -27,14 +24,10 @@ import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
 public interface URLFilter {
 
 	/**
-	 * Returns true if the filter MAY be interested in the given domain.
+	 * Returns the requests this filter intercepts.
 	 * <p>
-	 * If this method returns true, the domain will be intercepted.
-	 * And when a request is sent to this domain, handle() will be invoked.
-	 * If it turns out that the filter doesn't really want to intercept the URL (handle() throws UnsupportedURLException),
-	 * the request will be reverse-proxied to the original URL, as if nothing has happened.
+	 * All the URLs on the domains of the routes are redirected to the local HTTP server.
+	 * Requests that don't match any route are reverse-proxied to the original URL, as if nothing has happened.
 	 */
-	boolean canHandle(String domain);
-
-	void handle(String domain, String path, HttpExchange exchange) throws UnsupportedURLException, IOException;
+	List<Route> getRoutes();
 }
@@ -17,53 +17,153 @@
 package xyz.zuoyx.multiyggdrasil.httpd;
 
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_TEXT;
-import static xyz.zuoyx.multiyggdrasil.util.IOUtils.asBytes;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.sendResponse;
-import static xyz.zuoyx.multiyggdrasil.util.IOUtils.transfer;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.DEBUG;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.INFO;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import com.sun.net.httpserver.Filter;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import xyz.zuoyx.multiyggdrasil.Config;
-import xyz.zuoyx.multiyggdrasil.util.UnsupportedURLException;
+import xyz.zuoyx.multiyggdrasil.util.HttpTransport;
 
 public class URLProcessor {
 
-	private static final Pattern URL_REGEX = Pattern.compile("^(?<protocol>https?):\\/\\/(?<domain>[^\\/]+)(?<path>\\/?.*)$");
-	private static final Pattern LOCAL_URL_REGEX = Pattern.compile("^/(?<protocol>https?)/(?<domain>[^\\/]+)(?<path>\\/.*)$");
+	private static final int MAX_MEMOIZED_URLS = 4096;
 
-	private List<URLFilter> filters;
+	/**
+	 * The scheme of the URLs that are served in-process, see {@link InProcessURLStreamHandlerProvider}.
+	 */
+	public static final String IN_PROCESS_PROTOCOL = "multiyggdrasil";
+
+	private Router router;
 	private URLRedirector redirector;
+	private final Map<String, Optional<String>> transformedURLs = new ConcurrentHashMap<>();
+	private final boolean inProcess;
 
 	public URLProcessor(List<URLFilter> filters, URLRedirector redirector) {
-		this.filters = filters;
+		this(filters, redirector, false);
+	}
+
+	/**
+	 * @param inProcess whether to serve the intercepted URLs in-process, instead of redirecting them to the local HTTP server
+	 */
+	public URLProcessor(List<URLFilter> filters, URLRedirector redirector, boolean inProcess) {
+		List<Route> routes = new ArrayList<>();
+		filters.forEach(filter -> routes.addAll(filter.getRoutes()));
+		this.router = new Router(routes);
 		this.redirector = redirector;
+		if (inProcess && !InProcessURLStreamHandlerProvider.install(this)) {
+			log(WARNING, "Failed to register the " + IN_PROCESS_PROTOCOL + ": URL handler, falling back to the local HTTP server");
+			inProcess = false;
+		}
+		this.inProcess = inProcess;
+	}
+
+	/**
+	 * Returns true if the intercepted URLs are served in-process.
+	 */
+	public boolean isInProcess() {
+		return inProcess;
+	}
+
+	private static final class ParsedURL {
+		final String protocol;
+		final String domain;
+		final String path;
+
+		ParsedURL(String protocol, String domain, String path) {
+			this.protocol = protocol;
+			this.domain = domain;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * Parses {@code http[s]://{domain}[{path}]}.
+	 */
+	private static /* nullable */ ParsedURL parseURL(String url) {
+		int domainStart;
+		String protocol;
+		if (url.startsWith("https://")) {
+			protocol = "https";
+			domainStart = 8;
+		} else if (url.startsWith("http://")) {
+			protocol = "http";
+			domainStart = 7;
+		} else {
+			return null;
+		}
+		int domainEnd = url.indexOf('/', domainStart);
+		if (domainEnd == -1)
+			domainEnd = url.length();
+		if (domainEnd == domainStart || hasLineTerminator(url))
+			return null;
+		return new ParsedURL(protocol, url.substring(domainStart, domainEnd), url.substring(domainEnd));
+	}
+
+	/**
+	 * Parses the path of a redirected URL, {@code /http[s]/{domain}/{path}}.
+	 */
+	private static /* nullable */ ParsedURL parseLocalPath(String localPath) {
+		int domainStart;
+		String protocol;
+		if (localPath.startsWith("/https/")) {
+			protocol = "https";
+			domainStart = 7;
+		} else if (localPath.startsWith("/http/")) {
+			protocol = "http";
+			domainStart = 6;
+		} else {
+			return null;
+		}
+		int domainEnd = localPath.indexOf('/', domainStart);
+		if (domainEnd == -1 || domainEnd == domainStart || hasLineTerminator(localPath))
+			return null;
+		return new ParsedURL(protocol, localPath.substring(domainStart, domainEnd), localPath.substring(domainEnd));
+	}
+
+	private static boolean hasLineTerminator(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+				return true;
+		}
+		return false;
 	}
 
 	/**
 	 * Transforms the input URL(which is grabbed from the bytecode).
 	 * <p>
-	 * If any filter is interested in the URL, the URL will be redirected to the local HTTP server.
+	 * If any filter is interested in the URL, the URL will be redirected to the local HTTP server,
+	 * or to an {@value #IN_PROCESS_PROTOCOL} URL if it's served in-process.
 	 * Otherwise, the URLRedirector will be invoked to determine whether the URL should be modified
 	 * and pointed to the customized authentication server.
 	 * If none of above happens, empty is returned.
@@ -75,15 +175,25 @@ public class URLProcessor {
 			// fast path
 			return Optional.empty();
 		}
-		Matcher matcher = URL_REGEX.matcher(inputUrl);
-		if (!matcher.find()) {
+		// the same URLs appear in a lot of classes
+		Optional<String> memoized = transformedURLs.get(inputUrl);
+		if (memoized != null) {
+			return memoized;
+		}
+		Optional<String> result = doTransformURL(inputUrl);
+		if (transformedURLs.size() < MAX_MEMOIZED_URLS) {
+			transformedURLs.put(inputUrl, result);
+		}
+		return result;
+	}
+
+	private Optional<String> doTransformURL(String inputUrl) {
+		ParsedURL url = parseURL(inputUrl);
+		if (url == null) {
 			return Optional.empty();
 		}
-		String protocol = matcher.group("protocol");
-		String domain = matcher.group("domain");
-		String path = matcher.group("path");
 
-		Optional<String> result = transform(protocol, domain, path);
+		Optional<String> result = transform(url.protocol, url.domain, url.path);
 		if (result.isPresent()) {
 			log(DEBUG, "Transformed url [" + inputUrl + "] to [" + result.get() + "]");
 		}
@@ -91,143 +201,224 @@ public class URLProcessor {
 	}
 
 	private Optional<String> transform(String protocol, String domain, String path) {
-		boolean handleLocally = false;
-		for (URLFilter filter : filters) {
-			if (filter.canHandle(domain)) {
-				handleLocally = true;
-				break;
+		if (router.handlesDomain(domain)) {
+			if (inProcess) {
+				return Optional.of(IN_PROCESS_PROTOCOL + "://localhost/" + protocol + "/" + domain + path);
 			}
-		}
-
-		if (handleLocally) {
 			return Optional.of("http://127.0.0.1:" + getLocalApiPort() + "/" + protocol + "/" + domain + path);
 		}
 
 		return redirector.redirect(domain, path);
 	}
 
-	private DebugApiEndpoint debugApi = new DebugApiEndpoint();
-	private volatile HttpServer httpServer;
+	private volatile HttpdExecutor httpdExecutor;
+	private DebugApiEndpoint debugApi = new DebugApiEndpoint(() -> httpdExecutor);
 	private final Object httpServerLock = new Object();
 
+	private volatile int localApiPort; // 0 until the server is started
+
 	private int getLocalApiPort() {
+		int port = localApiPort;
+		if (port != 0) {
+			// fast path: called for every URL constant that is rewritten
+			return port;
+		}
 		synchronized (httpServerLock) {
-			if (httpServer == null) {
+			if (localApiPort == 0) {
 				try {
-					httpServer = createHttpServer();
+					localApiPort = startHttpServer();
 				} catch (IOException e) {
 					throw new IllegalStateException("HTTP server failed to create");
 				}
-				httpServer.setExecutor(Executors.newCachedThreadPool());
-				httpServer.start();
-				log(INFO, "HTTP server is running on port " + httpServer.getAddress().getPort());
+				log(INFO, "HTTP server is running on port " + localApiPort);
 			}
-			return httpServer.getAddress().getPort();
-		}
-	}
-
-	private HttpServer createHttpServer() throws IOException {
-		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", Config.httpdPort), 0);
-		server.createContext("/debug/", exchange -> debugApi.serve(exchange));
-		server.createContext("/", exchange -> {
-			Matcher matcher = LOCAL_URL_REGEX.matcher(exchange.getRequestURI().getPath());
-			if (matcher.find()) {
-				String protocol = matcher.group("protocol");
-				String domain = matcher.group("domain");
-				String path = matcher.group("path");
-				for (URLFilter filter : filters) {
-					if (filter.canHandle(domain)) {
-						try {
-							filter.handle(domain, path, exchange);
-						} catch (UnsupportedURLException e) {
-							continue;
-						} catch (Throwable e) {
-							log(WARNING, "An error occurred while processing request [" + exchange.getRequestURI().getPath() + "]", e);
-							sendResponse(exchange, 500, CONTENT_TYPE_TEXT, "Internal Server Error".getBytes());
-							return;
-						}
-
-						log(DEBUG, "Request to [" + exchange.getRequestURI().getPath() + "] is handled by [" + filter + "]");
-						return;
-					}
+			return localApiPort;
+		}
+	}
+
+	/**
+	 * Returns the port of the local HTTP server if it's configured explicitly, starting the server.
+	 * <p>
+	 * Otherwise the port is chosen randomly, and differs between runs.
+	 */
+	public Optional<Integer> getFixedLocalApiPort() {
+		if (Config.httpdPort == 0) {
+			return Optional.empty();
+		}
+		return Optional.of(getLocalApiPort());
+	}
+
+	private int startHttpServer() throws IOException {
+		httpdExecutor = HttpdExecutor.create();
+		InetSocketAddress address = new InetSocketAddress("127.0.0.1", Config.httpdPort);
+		if (Config.jdkHttpd) {
+			HttpServer server = HttpServer.create(address, 0);
+			server.setExecutor(httpdExecutor);
+			server.createContext("/debug/", exchange -> debugApi.serve(exchange))
+					.getFilters().add(httpdExecutor.loadSheddingFilter());
+			server.createContext("/", this::handleLocalRequest)
+					.getFilters().add(httpdExecutor.loadSheddingFilter());
+			server.start();
+			return server.getAddress().getPort();
+		} else {
+			List<Filter> filters = List.of(httpdExecutor.loadSheddingFilter());
+			HttpHandler handler = exchange -> {
+				if (exchange.getRequestURI().getPath().startsWith("/debug/")) {
+					debugApi.serve(exchange);
+				} else {
+					handleLocalRequest(exchange);
 				}
+			};
+			NioHttpServer server = NioHttpServer.create(address, httpdExecutor, exchange -> new Filter.Chain(filters, handler).doFilter(exchange));
+			server.start();
+			return server.getAddress().getPort();
+		}
+	}
 
-				String target = redirector.redirect(domain, path)
-						.orElseGet(() -> protocol + "://" + domain + path);
+	/**
+	 * Serves a request to a redirected URL, either from the local HTTP server or in-process.
+	 */
+	void handleLocalRequest(HttpExchange exchange) throws IOException {
+		ParsedURL url = parseLocalPath(exchange.getRequestURI().getPath());
+		if (url != null) {
+			Router.Match match = router.match(url.domain, exchange.getRequestMethod(), url.path);
+			if (match != null) {
 				try {
-					reverseProxy(exchange, target);
-				} catch (URISyntaxException | IOException e) {
-					log(WARNING, "Reverse proxy error", e);
-					sendResponse(exchange, 502, CONTENT_TYPE_TEXT, "Bad Gateway".getBytes());
+					match.getRoute().getHandler().handle(exchange, match.getParams());
+				} catch (Throwable e) {
+					log(WARNING, "An error occurred while processing request [" + exchange.getRequestURI().getPath() + "]", e);
+					sendResponse(exchange, 500, CONTENT_TYPE_TEXT, "Internal Server Error".getBytes());
+					return;
 				}
-			} else {
-				log(DEBUG, "No handler is found for [" + exchange.getRequestURI().getPath() + "]");
-				sendResponse(exchange, 404, CONTENT_TYPE_TEXT, "Not Found".getBytes());
+
+				log(DEBUG, "Request to [" + exchange.getRequestURI().getPath() + "] is handled by [" + match.getRoute() + "]");
+				return;
 			}
-		});
-		return server;
+
+			String target = redirector.redirect(url.domain, url.path)
+					.orElseGet(() -> url.protocol + "://" + url.domain + url.path);
+			try {
+				reverseProxy(exchange, target);
+			} catch (URISyntaxException | IOException e) {
+				log(WARNING, "Reverse proxy error", e);
+				sendResponse(exchange, 502, CONTENT_TYPE_TEXT, "Bad Gateway".getBytes());
+			}
+		} else {
+			log(DEBUG, "No handler is found for [" + exchange.getRequestURI().getPath() + "]");
+			sendResponse(exchange, 404, CONTENT_TYPE_TEXT, "Not Found".getBytes());
+		}
 	}
 
-	private static final Set<String> ignoredHeaders = new HashSet<>(Arrays.asList("host", "expect", "connection", "keep-alive", "transfer-encoding"));
+	private static final Set<String> ignoredHeaders = new HashSet<>(Arrays.asList("host", "expect", "connection", "keep-alive", "transfer-encoding", "content-length", "upgrade"));
+
+	private static final int PROXY_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_POOLED_PROXY_BUFFERS = 32;
+	private final BlockingQueue<byte[]> proxyBuffers = new ArrayBlockingQueue<>(MAX_POOLED_PROXY_BUFFERS);
 
 	private void reverseProxy(HttpExchange exchange, String upstream) throws URISyntaxException, IOException {
 		String method = exchange.getRequestMethod();
 
 		String rawQuery = exchange.getRequestURI().getRawQuery();
 		String url = rawQuery == null ? upstream : upstream + "?" + rawQuery;
+		URI uri = new URI(url);
 
-		Map<String, List<String>> requestHeaders = new LinkedHashMap<>(exchange.getRequestHeaders());
-		ignoredHeaders.forEach(requestHeaders::remove);
-
-		InputStream clientIn = exchange.getRequestBody();
+		// HttpClient refuses to set the connection-specific headers itself
+		Map<String, List<String>> requestHeaders = new LinkedHashMap<>();
+		exchange.getRequestHeaders().forEach((name, values) -> {
+			if (!ignoredHeaders.contains(name.toLowerCase())) {
+				requestHeaders.put(name, values);
+			}
+		});
 
 		log(DEBUG, "Reverse proxy: > " + method + " " + url + ", headers: " + requestHeaders);
 
-		HttpURLConnection conn = (HttpURLConnection) new URI(url).toURL().openConnection();
-		conn.setRequestMethod(method);
-		conn.setDoOutput(clientIn.available() != 0);
-		requestHeaders.forEach((key, values) -> {
-			String value = String.join(",", values);
-			conn.setRequestProperty(key, value);
-		});
+		HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+				.method(method, requestBody(exchange));
+		if (Config.upstreamReadTimeout > 0) {
+			request.timeout(Duration.ofMillis(Config.upstreamReadTimeout));
+		}
+		requestHeaders.forEach((name, values) -> request.header(name, String.join(",", values)));
 
-		if (clientIn.available() != 0) {
-			try (OutputStream upstreamOut = conn.getOutputStream()) {
-				transfer(clientIn, upstreamOut);
-			}
+		HttpResponse<InputStream> response;
+		try {
+			response = HttpTransport.pooledClient(uri).send(request.build(), BodyHandlers.ofInputStream());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + url);
 		}
 
-		int responseCode = conn.getResponseCode();
-		String reponseMessage = conn.getResponseMessage();
+		int responseCode = response.statusCode();
 		Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
-		conn.getHeaderFields().forEach((name, values) -> {
-			if (name != null && !ignoredHeaders.contains(name.toLowerCase())) {
+		response.headers().map().forEach((name, values) -> {
+			if (!name.startsWith(":") && !ignoredHeaders.contains(name.toLowerCase())) {
 				responseHeaders.put(name, values);
 			}
 		});
-		InputStream upstreamIn;
-		try {
-			upstreamIn = conn.getInputStream();
-		} catch (IOException e) {
-			upstreamIn = conn.getErrorStream();
-		}
-		log(DEBUG, "Reverse proxy: < " + responseCode + " " + reponseMessage + " , headers: " + responseHeaders);
-
-		// no content
-		long contentLength = -1;
-		for (Entry<String, List<String>> header : responseHeaders.entrySet()) {
-			if ("content-length".equalsIgnoreCase(header.getKey())) {
-				contentLength = Long.parseLong(header.getValue().get(0));
-				break;
+		log(DEBUG, "Reverse proxy: < " + responseCode + ", headers: " + responseHeaders);
+		responseHeaders.forEach((name, values) -> values.forEach(value -> exchange.getResponseHeaders().add(name, value)));
+
+		// HttpExchange takes -1 for no content, and 0 for chunked encoding
+		OptionalLong upstreamLength = response.headers().firstValueAsLong("content-length");
+		long contentLength;
+		if (responseCode == 204 || responseCode == 304 || "HEAD".equals(method)) {
+			contentLength = -1;
+		} else if (upstreamLength.isPresent()) {
+			contentLength = upstreamLength.getAsLong() == 0 ? -1 : upstreamLength.getAsLong();
+		} else {
+			contentLength = 0;
+		}
+
+		try (InputStream upstreamIn = response.body()) {
+			exchange.sendResponseHeaders(responseCode, contentLength);
+			if (contentLength != -1) {
+				try (OutputStream clientOut = exchange.getResponseBody()) {
+					pipe(upstreamIn, clientOut);
+				}
 			}
 		}
+	}
 
-		if (contentLength == -1 && conn.getHeaderField("transfer-encoding") != null) {
-			// chunked encoding
-			contentLength = 0;
+	private BodyPublisher requestBody(HttpExchange exchange) {
+		// HttpExchange decodes the chunked encoding, and gives an empty stream if there's no body
+		InputStream clientIn = exchange.getRequestBody();
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength != null) {
+			long length;
+			try {
+				length = Long.parseLong(contentLength.trim());
+			} catch (NumberFormatException e) {
+				length = -1;
+			}
+			if (length == 0) {
+				return BodyPublishers.noBody();
+			} else if (length > 0) {
+				return BodyPublishers.fromPublisher(BodyPublishers.ofInputStream(() -> clientIn), length);
+			}
+		} else if (exchange.getRequestHeaders().getFirst("Transfer-Encoding") == null) {
+			return BodyPublishers.noBody();
 		}
-		responseHeaders.forEach((name, values) -> values.forEach(value -> exchange.getResponseHeaders().add(name, value)));
+		// sent with chunked encoding
+		return BodyPublishers.ofInputStream(() -> clientIn);
+	}
 
-		sendResponse(exchange, responseCode, null, asBytes(upstreamIn), contentLength);
+	/**
+	 * Copies the body in bounded chunks, flushing whenever the upstream has nothing more to give at the moment.
+	 */
+	private void pipe(InputStream from, OutputStream to) throws IOException {
+		byte[] buf = proxyBuffers.poll();
+		if (buf == null) {
+			buf = new byte[PROXY_BUFFER_SIZE];
+		}
+		try {
+			int read;
+			while ((read = from.read(buf)) != -1) {
+				to.write(buf, 0, read);
+				if (from.available() == 0) {
+					to.flush();
+				}
+			}
+		} finally {
+			proxyBuffers.offer(buf);
+		}
 	}
 }
@@ -16,6 +16,7 @@
  */
 package xyz.zuoyx.multiyggdrasil.transform;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.DEBUG;
@@ -23,11 +24,15 @@ import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.INFO;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
 import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
 import static org.objectweb.asm.Opcodes.ASM9;
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,25 +40,35 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import xyz.zuoyx.multiyggdrasil.Config;
+import xyz.zuoyx.multiyggdrasil.util.PrefixTrie;
 
 public class ClassTransformer implements ClassFileTransformer {
 
-	public final List<TransformUnit> units = new CopyOnWriteArrayList<>();
 	public final List<ClassLoadingListener> listeners = new CopyOnWriteArrayList<>();
 	public final PerformanceMetrics performanceMetrics = new PerformanceMetrics();
-	private String[] ignores = new String[0];
+	private PrefixTrie ignores = new PrefixTrie(emptyList());
+	private volatile /* nullable */ CodeSourceFilter codeSourceFilter;
+	private static final String CODE_SOURCE_VERDICTS_FILE = "jars.txt";
+
+	private volatile /* nullable */ TransformCache cache;
+	private Path cacheDirectory;
+	private String cacheFingerprint;
+	private TransformUnit[] cachedUnits; // the units the cache was opened for, in registration order
+	private long cacheableUnits; // bit i is set if cachedUnits[i] is cacheable
+
+	private volatile TransformIndex index = new TransformIndex(new TransformUnit[0]);
 
 	private class TransformHandle {
 
 		private class TransformContextImpl implements TransformContext {
 
 			public boolean modifiedMark;
-			public boolean callbackMetafactoryRequested = false;
 
 			@Override
 			public void markModified() {
@@ -136,35 +151,39 @@ public class ClassTransformer implements ClassFileTransformer {
 		public void accept(TransformUnit... units) {
 			long t0 = System.nanoTime();
 
-			ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			// passing the reader allows ASM to copy the methods that aren't touched by any unit as is
+			ClassReader reader = getClassReader();
+			ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+			ClassVisitor injector = new MemberInjector(writer);
 
 			TransformContextImpl[] ctxs = new TransformContextImpl[units.length];
-			ClassVisitor chain = writer;
+			ClassVisitor chain = injector;
 			for (int i = units.length - 1; i >= 0; i--) {
+				UnitMetrics unitMetrics = performanceMetrics.getUnitMetrics(units[i]);
 				TransformContextImpl ctx = new TransformContextImpl();
+				long u0 = System.nanoTime();
 				Optional<ClassVisitor> visitor = units[i].transform(classLoader, className, chain, ctx);
+				unitMetrics.visitorTime.record(System.nanoTime() - u0);
+				unitMetrics.invocations.increment();
 				if (visitor.isEmpty())
 					continue;
+				unitMetrics.matched.increment();
 				ctxs[i] = ctx;
 				chain = visitor.get();
 			}
 
 			long t1 = System.nanoTime();
-			synchronized (performanceMetrics) {
-				performanceMetrics.scanTime += t1 - t0;
-			}
+			performanceMetrics.scanTime.add(t1 - t0);
 
-			if (chain == writer)
+			if (chain == injector)
 				return;
 
 			t0 = System.nanoTime();
 
-			getClassReader().accept(chain, 0);
+			reader.accept(chain, 0);
 
 			t1 = System.nanoTime();
-			synchronized (performanceMetrics) {
-				performanceMetrics.analysisTime += t1 - t0;
-			}
+			performanceMetrics.analysisTime.add(t1 - t0);
 
 			boolean modified = false;
 			for (int i = 0; i < units.length; i++) {
@@ -173,63 +192,63 @@ public class ClassTransformer implements ClassFileTransformer {
 					continue;
 
 				log(INFO, "Transformed [" + className + "] with [" + units[i] + "]");
+				performanceMetrics.getUnitMetrics(units[i]).modified.increment();
 
 				if (appliedTransformers == null)
 					appliedTransformers = new ArrayList<>();
 				appliedTransformers.add(units[i]);
 
-				this.addCallbackMetafactory |= ctx.callbackMetafactoryRequested;
-
 				modified = true;
 			}
 
 			if (modified) {
-				updateClassBuffer(writer.toByteArray());
+				byte[] result = writer.toByteArray();
+				if (addCallbackMetafactory) {
+					upgradeClassVersion(result);
+				}
+				updateClassBuffer(result);
 			}
 		}
 
-		private void injectCallbackMetafactory() {
-			log(DEBUG, "Adding callback metafactory");
+		/**
+		 * Emits the members requested by the units during the same pass,
+		 * after all the original members have been visited.
+		 */
+		private class MemberInjector extends ClassVisitor {
 
-			int classVersion = getClassVersion();
-			int majorVersion = classVersion & 0xffff;
-
-			int newVersion;
-			if (majorVersion < 51) {
-				newVersion = 51;
-				log(DEBUG, "Upgrading class version from " + classVersion + " to " + newVersion);
-			} else {
-				newVersion = classVersion;
+			MemberInjector(ClassVisitor cv) {
+				super(ASM9, cv);
 			}
 
-			ClassReader reader = getClassReader();
-			ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
-			ClassVisitor visitor = new ClassVisitor(ASM9, writer) {
-				@Override
-				public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-					super.visit(newVersion, access, name, signature, superName, interfaces);
+			@Override
+			public void visitEnd() {
+				if (addCallbackMetafactory) {
+					log(DEBUG, "Adding callback metafactory");
 					CallbackSupport.insertMetafactory(this);
 				}
-			};
-			reader.accept(visitor, 0);
-			updateClassBuffer(writer.toByteArray());
-		}
-
-		private void injectGeneratedMethods() {
-			ClassReader reader = getClassReader();
-			ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
-			ClassVisitor visitor = new ClassVisitor(ASM9, writer) {
-				@Override
-				public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-					super.visit(version, access, name, signature, superName, interfaces);
+				if (generatedMethods != null) {
 					for (Entry<String, Consumer<ClassVisitor>> el : generatedMethods.entrySet()) {
 						log(DEBUG, "Adding generated method [" + el.getKey() + "]");
 						el.getValue().accept(this);
 					}
 				}
-			};
-			reader.accept(visitor, 0);
-			updateClassBuffer(writer.toByteArray());
+				super.visitEnd();
+			}
+		}
+
+		/**
+		 * The callback metafactory is invoked through invokedynamic, which requires class version 51.
+		 * The version is patched in the output directly, as it's already written when the need arises.
+		 */
+		private void upgradeClassVersion(byte[] classfile) {
+			int majorVersion = ((classfile[6] & 0xff) << 8) | (classfile[7] & 0xff);
+			if (majorVersion < 51) {
+				log(DEBUG, "Upgrading class version from " + majorVersion + " to 51");
+				classfile[4] = 0;
+				classfile[5] = 0;
+				classfile[6] = 0;
+				classfile[7] = 51;
+			}
 		}
 
 		private void updateClassBuffer(byte[] buf) {
@@ -242,12 +261,6 @@ public class ClassTransformer implements ClassFileTransformer {
 			if (appliedTransformers == null || appliedTransformers.isEmpty()) {
 				return Optional.empty();
 			}
-			if (addCallbackMetafactory) {
-				injectCallbackMetafactory();
-			}
-			if (generatedMethods != null) {
-				injectGeneratedMethods();
-			}
 			return Optional.of(classBuffer);
 		}
 
@@ -267,39 +280,69 @@ public class ClassTransformer implements ClassFileTransformer {
 				long t0 = System.nanoTime();
 
 				String className = internalClassName.replace('/', '.');
-				for (String ignore : ignores) {
-					if (className.startsWith(ignore)) {
-						listeners.forEach(it -> it.onClassLoading(loader, className, classfileBuffer, Collections.emptyList()));
-
-						long t1 = System.nanoTime();
-						synchronized (performanceMetrics) {
-							performanceMetrics.classesSkipped++;
-							performanceMetrics.totalTime += t1 - t0;
-							performanceMetrics.matchTime += t1 - t0;
-						}
-						return null;
+				if (ignores.matches(className)) {
+					listeners.forEach(it -> it.onClassLoading(loader, className, classfileBuffer, Collections.emptyList()));
+
+					long t1 = System.nanoTime();
+					performanceMetrics.classesSkipped.increment();
+					performanceMetrics.totalTime.add(t1 - t0);
+					performanceMetrics.matchTime.add(t1 - t0);
+					return null;
+				}
+				CodeSourceFilter codeSourceFilter = this.codeSourceFilter;
+				if (codeSourceFilter != null && protectionDomain != null && codeSourceFilter.isSkipped(protectionDomain)) {
+					listeners.forEach(it -> it.onClassLoading(loader, className, classfileBuffer, Collections.emptyList()));
+
+					long t1 = System.nanoTime();
+					performanceMetrics.classesSkippedByCodeSource.increment();
+					performanceMetrics.totalTime.add(t1 - t0);
+					performanceMetrics.matchTime.add(t1 - t0);
+					return null;
+				}
+				TransformIndex index = this.index;
+				TransformUnit[] candidates = index.getTargetingUnits(className);
+				if (index.hasTriggeredUnits()) {
+					candidates = index.select(candidates, classfileBuffer);
+				}
+				if (candidates.length == 0) {
+					// fast path: no unit is interested in this class
+					onClassFiltered(loader, className, classfileBuffer, t0);
+					return null;
+				}
+
+				TransformCache cache = this.cache;
+				TransformCache.Key cacheKey = null;
+				long candidateMask = cache == null ? 0 : cacheableMask(candidates);
+				if (candidateMask != 0) {
+					// the result depends on which units are offered the class, not only on the class itself
+					cacheKey = cache.keyOf(className, classfileBuffer, candidateMask);
+					TransformCache.Entry cached = loadCached(cache, cacheKey);
+					if (cached != null) {
+						return onCacheHit(loader, className, classfileBuffer, cached, t0);
 					}
 				}
 				long t1 = System.nanoTime();
 
 				TransformHandle handle = new TransformHandle(loader, className, classfileBuffer);
-				TransformUnit[] unitsArray = units.toArray(new TransformUnit[0]);
-				handle.accept(unitsArray);
+				handle.accept(candidates);
 
 				Optional<byte[]> transformResult = handle.finish();
 				if (Config.printUntransformedClass && transformResult.isEmpty()) {
 					log(DEBUG, "No transformation is applied to [" + className + "]");
 				}
+				if (cacheKey != null) {
+					storeCached(cache, cacheKey, handle.getAppliedTransformers(), transformResult.orElse(null));
+				}
 
 				listeners.forEach(it -> it.onClassLoading(loader, className, handle.getFinalResult(), handle.getAppliedTransformers()));
 
 				long t2 = System.nanoTime();
 
-				synchronized (performanceMetrics) {
-					performanceMetrics.classesScanned++;
-					performanceMetrics.totalTime += t2 - t0;
-					performanceMetrics.matchTime += t1 - t0;
-				}
+				performanceMetrics.classesScanned.increment();
+				if (cacheKey != null)
+					performanceMetrics.cacheMisses.increment();
+				performanceMetrics.totalTime.add(t2 - t0);
+				performanceMetrics.matchTime.add(t1 - t0);
 
 				return transformResult.orElse(null);
 			} catch (Throwable e) {
@@ -309,6 +352,87 @@ public class ClassTransformer implements ClassFileTransformer {
 		return null;
 	}
 
+	private void onClassFiltered(ClassLoader loader, String className, byte[] classfileBuffer, long t0) {
+		listeners.forEach(it -> it.onClassLoading(loader, className, classfileBuffer, Collections.emptyList()));
+
+		long t1 = System.nanoTime();
+		performanceMetrics.classesFiltered.increment();
+		performanceMetrics.totalTime.add(t1 - t0);
+		performanceMetrics.matchTime.add(t1 - t0);
+	}
+
+	private byte[] onCacheHit(ClassLoader loader, String className, byte[] classfileBuffer, TransformCache.Entry cached, long t0) {
+		List<TransformUnit> appliedUnits = new ArrayList<>();
+		for (int i = 0; i < cachedUnits.length; i++) {
+			if ((cached.appliedUnits & (1L << i)) != 0)
+				appliedUnits.add(cachedUnits[i]);
+		}
+		if (cached.result == null) {
+			if (Config.printUntransformedClass) {
+				log(DEBUG, "No transformation is applied to [" + className + "] (cached)");
+			}
+		} else {
+			log(DEBUG, "Loaded transformed [" + className + "] from cache, applied units: " + appliedUnits);
+		}
+
+		byte[] bytecode = cached.result == null ? classfileBuffer : cached.result;
+		listeners.forEach(it -> it.onClassLoading(loader, className, bytecode, appliedUnits));
+
+		long t1 = System.nanoTime();
+		performanceMetrics.cacheHits.increment();
+		performanceMetrics.totalTime.add(t1 - t0);
+		performanceMetrics.matchTime.add(t1 - t0);
+		return cached.result;
+	}
+
+	/**
+	 * Returns the set of the given units in the cache, or 0 if any of them isn't cacheable.
+	 */
+	private long cacheableMask(TransformUnit[] units) {
+		long mask = 0;
+		for (TransformUnit unit : units) {
+			long bit = unitBit(unit);
+			if ((bit & cacheableUnits) == 0)
+				return 0;
+			mask |= bit;
+		}
+		return mask;
+	}
+
+	private long unitBit(TransformUnit unit) {
+		for (int i = 0; i < cachedUnits.length; i++) {
+			if (cachedUnits[i] == unit)
+				return 1L << i;
+		}
+		return 0;
+	}
+
+	private /* nullable */ TransformCache.Entry loadCached(TransformCache cache, TransformCache.Key key) {
+		try {
+			return cache.get(key);
+		} catch (IOException e) {
+			disableCache(e);
+			return null;
+		}
+	}
+
+	private void storeCached(TransformCache cache, TransformCache.Key key, List<TransformUnit> appliedUnits, /* nullable */ byte[] result) {
+		long appliedMask = 0;
+		for (TransformUnit unit : appliedUnits) {
+			appliedMask |= unitBit(unit);
+		}
+		try {
+			cache.put(key, appliedMask, result);
+		} catch (IOException e) {
+			disableCache(e);
+		}
+	}
+
+	private void disableCache(IOException e) {
+		log(WARNING, "Transform cache is disabled due to an I/O error", e);
+		cache = null;
+	}
+
 	private static List<String> extractStringConstants(ClassReader reader) {
 		List<String> constants = new ArrayList<>();
 		int constantPoolSize = reader.getItemCount();
@@ -327,6 +451,99 @@ public class ClassTransformer implements ClassFileTransformer {
 	}
 
 	public void setIgnores(Collection<String> newIgnores) {
-		ignores = newIgnores.toArray(ignores);
+		ignores = new PrefixTrie(newIgnores);
+	}
+
+	/**
+	 * Tells whether any unit might transform the class, according to the unit index.
+	 *
+	 * @param classfile supplies the bytecode of the class, or null if it's unavailable
+	 */
+	public boolean mayTransform(String className, Supplier</* nullable */ byte[]> classfile) {
+		TransformIndex index = this.index;
+		if (index.getTargetingUnits(className).length != 0) {
+			return true;
+		}
+		if (!index.hasTriggeredUnits()) {
+			return false;
+		}
+		byte[] bytes = classfile.get();
+		return bytes == null || index.select(new TransformUnit[0], bytes).length != 0;
+	}
+
+	public boolean isIgnored(String className) {
+		return ignores.matches(className);
+	}
+
+	/**
+	 * Enables skipping the classes from the jars in which no class would be transformed.
+	 * <p>
+	 * The verdicts are persisted in the transform cache directory, if the cache is enabled.
+	 */
+	public synchronized void enableCodeSourceFilter() {
+		CodeSourceFilter filter = new CodeSourceFilter(() -> index, this::isIgnored);
+		if (cache != null) {
+			filter.persistTo(cacheDirectory.resolve(CODE_SOURCE_VERDICTS_FILE), cacheFingerprint);
+		}
+		codeSourceFilter = filter;
+	}
+
+	/**
+	 * Registers a transform unit.
+	 * <p>
+	 * The unit index is rebuilt here, so that looking up the units of a class doesn't require any scanning.
+	 */
+	public synchronized void addUnit(TransformUnit unit) {
+		if (cache != null)
+			throw new IllegalStateException("Units can't be added after the transform cache is enabled");
+		index = index.withUnit(unit);
+		if (codeSourceFilter != null)
+			codeSourceFilter.reset();
+	}
+
+	/**
+	 * Enables the persistent transform cache. This must be called after all the units are registered.
+	 *
+	 * @param environment describes the agent and its options, which the output of the units depends on
+	 */
+	public synchronized void enableCache(Path directory, String environment) {
+		TransformUnit[] units = index.units;
+		if (units.length >= Long.SIZE) {
+			log(WARNING, "Too many transform units, transform cache is disabled");
+			return;
+		}
+
+		MessageDigest fingerprint = TransformCache.newDigest();
+		fingerprint.update(environment.getBytes(UTF_8));
+		long cacheable = 0;
+		for (int i = 0; i < units.length; i++) {
+			Optional<String> key = units[i].getCacheKey();
+			fingerprint.update((byte) 0);
+			if (key.isPresent()) {
+				cacheable |= 1L << i;
+				fingerprint.update(key.get().getBytes(UTF_8));
+			} else {
+				log(DEBUG, "Results of [" + units[i] + "] are not cacheable");
+			}
+		}
+
+		try {
+			byte[] fingerprintBytes = fingerprint.digest();
+			TransformCache opened = TransformCache.open(directory, fingerprintBytes);
+			cachedUnits = units;
+			cacheableUnits = cacheable;
+			cacheDirectory = directory;
+			cacheFingerprint = HexFormat.of().formatHex(fingerprintBytes);
+			cache = opened;
+			if (codeSourceFilter != null) {
+				codeSourceFilter.persistTo(directory.resolve(CODE_SOURCE_VERDICTS_FILE), cacheFingerprint);
+			}
+		} catch (IOException e) {
+			log(WARNING, "Failed to open transform cache", e);
+		}
+	}
+
+	public List<TransformUnit> getUnits() {
+		return List.of(index.units);
 	}
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.DEBUG;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Skips the classes from the jars in which no class would be transformed.
+ * <p>
+ * When a class from a jar is loaded for the first time, the whole jar is checked against the unit index
+ * in the background. The classes from the jar are processed as usual until the check completes.
+ * Verdicts are keyed by the path, size and modification time of the jar, and can be persisted across runs.
+ */
+final class CodeSourceFilter {
+
+	private enum Verdict {
+		PENDING, SKIP, KEEP
+	}
+
+	private static final String VERSIONED_ENTRY_PREFIX = "META-INF/versions/";
+	private static final TransformUnit[] NO_UNITS = new TransformUnit[0];
+
+	private final Supplier<TransformIndex> index;
+	private final Predicate<String> ignored;
+
+	/** Verdicts by URL path of the jar */
+	private final Map<String, Verdict> verdicts = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "MultiYggdrasil jar scanner");
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		return t;
+	});
+
+	// "<verdict>\t<size> <mtime>" by URL path of the jar, as loaded from the previous runs
+	private final Map<String, String> persistedVerdicts = new ConcurrentHashMap<>();
+	private /* nullable */ Path persistFile; // guarded by this
+
+	CodeSourceFilter(Supplier<TransformIndex> index, Predicate<String> ignored) {
+		this.index = index;
+		this.ignored = ignored;
+	}
+
+	/**
+	 * @return true if the classes from the code source are known to need no transformation
+	 */
+	boolean isSkipped(ProtectionDomain protectionDomain) {
+		CodeSource codeSource = protectionDomain.getCodeSource();
+		if (codeSource == null)
+			return false;
+		URL location = codeSource.getLocation();
+		if (location == null || !"file".equals(location.getProtocol()))
+			return false;
+
+		String key = location.getPath();
+		Verdict verdict = verdicts.get(key);
+		if (verdict == null) {
+			if (verdicts.putIfAbsent(key, Verdict.PENDING) == null) {
+				executor.execute(() -> verdicts.put(key, check(key, location)));
+			}
+			return false;
+		}
+		return verdict == Verdict.SKIP;
+	}
+
+	/**
+	 * Forgets the verdicts, which have to be made again when the units change.
+	 */
+	void reset() {
+		verdicts.clear();
+		persistedVerdicts.clear();
+	}
+
+	/**
+	 * Loads the verdicts from the given file, and stores new ones in it.
+	 *
+	 * @param fingerprint identifies the unit setup that the verdicts were made for
+	 */
+	synchronized void persistTo(Path file, String fingerprint) {
+		try {
+			List<String> lines = Files.exists(file) ? Files.readAllLines(file, UTF_8) : List.of();
+			if (lines.isEmpty() || !lines.get(0).equals(fingerprint)) {
+				Files.write(file, List.of(fingerprint), UTF_8);
+			} else {
+				for (String line : lines.subList(1, lines.size())) {
+					// <verdict> <stamp> <path>
+					String[] parts = line.split("\t", 3);
+					if (parts.length == 3) {
+						persistedVerdicts.put(parts[2], parts[0] + "\t" + parts[1]);
+					}
+				}
+			}
+			persistFile = file;
+		} catch (IOException e) {
+			log(WARNING, "Failed to load jar verdicts from " + file, e);
+		}
+	}
+
+	private Verdict check(String key, URL location) {
+		Path jar;
+		BasicFileAttributes attributes;
+		try {
+			jar = Paths.get(location.toURI());
+			attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+		} catch (URISyntaxException | IOException | IllegalArgumentException e) {
+			return Verdict.KEEP;
+		}
+		if (!attributes.isRegularFile())
+			return Verdict.KEEP; // e.g. a directory of classes, which can change at any time
+
+		String stamp = attributes.size() + " " + attributes.lastModifiedTime().toMillis();
+		String persisted = persistedVerdicts.get(key);
+		if ((Verdict.SKIP + "\t" + stamp).equals(persisted)) {
+			return Verdict.SKIP;
+		} else if ((Verdict.KEEP + "\t" + stamp).equals(persisted)) {
+			return Verdict.KEEP;
+		}
+
+		long t0 = System.nanoTime();
+		Verdict verdict;
+		try {
+			verdict = scan(jar);
+		} catch (IOException e) {
+			log(DEBUG, "Failed to scan " + jar + ": " + e);
+			return Verdict.KEEP;
+		}
+		long t1 = System.nanoTime();
+		log(DEBUG, "Scanned " + jar + " in " + (t1 - t0) / 1_000_000 + "ms: " + verdict);
+
+		persist(key, verdict, stamp);
+		return verdict;
+	}
+
+	private Verdict scan(Path jar) throws IOException {
+		TransformIndex index = this.index.get();
+		try (JarFile jarFile = new JarFile(jar.toFile(), false)) {
+			Enumeration<JarEntry> entries = jarFile.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String className = toClassName(entry.getName());
+				if (className == null || ignored.test(className))
+					continue;
+				if (index.getTargetingUnits(className).length != 0)
+					return Verdict.KEEP;
+				if (index.hasTriggeredUnits()) {
+					byte[] classfile;
+					try (InputStream in = jarFile.getInputStream(entry)) {
+						classfile = in.readAllBytes();
+					}
+					if (index.select(NO_UNITS, classfile).length != 0)
+						return Verdict.KEEP;
+				}
+			}
+		}
+		return Verdict.SKIP;
+	}
+
+	private static /* nullable */ String toClassName(String entryName) {
+		if (!entryName.endsWith(".class"))
+			return null;
+		String name = entryName.substring(0, entryName.length() - ".class".length());
+		if (name.startsWith(VERSIONED_ENTRY_PREFIX)) {
+			int idx = name.indexOf('/', VERSIONED_ENTRY_PREFIX.length());
+			if (idx == -1)
+				return null;
+			name = name.substring(idx + 1);
+		}
+		return name.replace('/', '.');
+	}
+
+	private synchronized void persist(String key, Verdict verdict, String stamp) {
+		if (persistFile == null)
+			return;
+		try {
+			Files.write(persistFile, List.of(verdict + "\t" + stamp + "\t" + key), UTF_8, CREATE, APPEND);
+		} catch (IOException e) {
+			log(WARNING, "Failed to save jar verdict to " + persistFile, e);
+			persistFile = null;
+		}
+	}
+}
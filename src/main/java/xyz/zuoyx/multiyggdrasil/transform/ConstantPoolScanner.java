@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Finds out which patterns occur in the string constants of a class, without parsing the class.
+ * <p>
+ * The constant pool is walked over the raw class file bytes. The strings are matched in their
+ * modified UTF-8 form against an Aho-Corasick automaton built from all the patterns,
+ * so that no string is decoded and nothing is allocated while scanning.
+ */
+public final class ConstantPoolScanner {
+
+	static final int MAX_PATTERNS = Long.SIZE;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_STRING = 8;
+
+	private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[1024]);
+
+	/** transitions[state * 256 + byte] is the next state */
+	private final int[] transitions;
+
+	/** outputs[state] is the set of patterns matched when entering the state */
+	private final long[] outputs;
+
+	private final long allPatterns;
+
+	public ConstantPoolScanner(String[] patterns) {
+		if (patterns.length > MAX_PATTERNS) {
+			throw new IllegalArgumentException("Too many patterns: " + patterns.length);
+		}
+
+		byte[][] encoded = new byte[patterns.length][];
+		int maxStates = 1;
+		for (int i = 0; i < patterns.length; i++) {
+			encoded[i] = toModifiedUTF8(patterns[i]);
+			maxStates += encoded[i].length;
+		}
+
+		// build the trie, -1 means no transition
+		int[] goTo = new int[maxStates * 256];
+		Arrays.fill(goTo, -1);
+		long[] out = new long[maxStates];
+		int states = 1;
+		for (int i = 0; i < encoded.length; i++) {
+			int state = 0;
+			for (byte b : encoded[i]) {
+				int slot = state * 256 + (b & 0xff);
+				if (goTo[slot] == -1) {
+					goTo[slot] = states++;
+				}
+				state = goTo[slot];
+			}
+			out[state] |= 1L << i;
+		}
+
+		// turn the trie into a DFA, following the failure links breadth-first
+		int[] fail = new int[states];
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int c = 0; c < 256; c++) {
+			int next = goTo[c];
+			if (next == -1) {
+				goTo[c] = 0;
+			} else {
+				fail[next] = 0;
+				queue.add(next);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			out[state] |= out[fail[state]];
+			for (int c = 0; c < 256; c++) {
+				int slot = state * 256 + c;
+				int next = goTo[slot];
+				if (next == -1) {
+					goTo[slot] = goTo[fail[state] * 256 + c];
+				} else {
+					fail[next] = goTo[fail[state] * 256 + c];
+					queue.add(next);
+				}
+			}
+		}
+
+		this.transitions = Arrays.copyOf(goTo, states * 256);
+		this.outputs = Arrays.copyOf(out, states);
+		this.allPatterns = patterns.length == MAX_PATTERNS ? -1L : (1L << patterns.length) - 1;
+	}
+
+	/**
+	 * Returns the set of patterns that occur in any CONSTANT_String of the class,
+	 * where bit i stands for the i-th pattern.
+	 * <p>
+	 * If the class file can't be understood, all patterns are reported as matched,
+	 * leaving the decision to the subsequent transformation.
+	 */
+	public long scan(byte[] classfile) {
+		if (allPatterns == 0) {
+			return 0;
+		}
+		if (classfile.length < 10 || readInt(classfile, 0) != 0xCAFEBABE) {
+			return allPatterns;
+		}
+
+		int constantPoolCount = readUnsignedShort(classfile, 8);
+		int[] scratch = SCRATCH.get();
+		if (scratch.length < constantPoolCount * 2) {
+			scratch = new int[constantPoolCount * 2];
+			SCRATCH.set(scratch);
+		}
+		// scratch[0 .. constantPoolCount) are the offsets of the CONSTANT_Utf8 entries,
+		// scratch[constantPoolCount .. ) are the indexes referenced by the CONSTANT_String entries
+		int stringCount = 0;
+		int offset = 10;
+		try {
+			for (int idx = 1; idx < constantPoolCount; idx++) {
+				int tag = classfile[offset];
+				switch (tag) {
+					case CONSTANT_UTF8 -> {
+						scratch[idx] = offset;
+						offset += 3 + readUnsignedShort(classfile, offset + 1);
+					}
+					case CONSTANT_STRING -> {
+						scratch[constantPoolCount + stringCount++] = readUnsignedShort(classfile, offset + 1);
+						offset += 3;
+					}
+					case 7, 16, 19, 20 -> offset += 3; // Class, MethodType, Module, Package
+					case 15 -> offset += 4; // MethodHandle
+					case 3, 4, 9, 10, 11, 12, 17, 18 -> offset += 5; // Integer, Float, refs, NameAndType, Dynamic, InvokeDynamic
+					case 5, 6 -> { // Long, Double
+						offset += 9;
+						idx++;
+					}
+					default -> {
+						return allPatterns;
+					}
+				}
+			}
+
+			long matched = 0;
+			for (int i = 0; i < stringCount; i++) {
+				int utf8Offset = scratch[scratch[constantPoolCount + i]];
+				if (classfile[utf8Offset] != CONSTANT_UTF8) {
+					return allPatterns;
+				}
+				int start = utf8Offset + 3;
+				int end = start + readUnsignedShort(classfile, utf8Offset + 1);
+				int state = 0;
+				for (int p = start; p < end; p++) {
+					state = transitions[(state << 8) | (classfile[p] & 0xff)];
+					matched |= outputs[state];
+				}
+				if (matched == allPatterns) {
+					break;
+				}
+			}
+			return matched;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			return allPatterns;
+		}
+	}
+
+	private static int readUnsignedShort(byte[] b, int offset) {
+		return ((b[offset] & 0xff) << 8) | (b[offset + 1] & 0xff);
+	}
+
+	private static int readInt(byte[] b, int offset) {
+		return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+	}
+
+	/**
+	 * Encodes a string in the modified UTF-8 format used by class files (JVMS 4.4.7).
+	 */
+	private static byte[] toModifiedUTF8(String str) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(str.length());
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c >= 0x0001 && c <= 0x007f) {
+				out.write(c);
+			} else if (c <= 0x07ff) {
+				out.write(0xc0 | (c >> 6));
+				out.write(0x80 | (c & 0x3f));
+			} else {
+				out.write(0xe0 | (c >> 12));
+				out.write(0x80 | ((c >> 6) & 0x3f));
+				out.write(0x80 | (c & 0x3f));
+			}
+		}
+		return out.toByteArray();
+	}
+}
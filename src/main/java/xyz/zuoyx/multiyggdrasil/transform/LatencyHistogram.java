@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, with power-of-two buckets.
+ * <p>
+ * Bucket {@code i} counts the durations in {@code [2^(i-1), 2^i)}, and bucket 0 counts zero durations.
+ */
+public class LatencyHistogram {
+
+	public static final int BUCKETS = Long.SIZE;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder sum = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+		sum.add(nanos);
+	}
+
+	/**
+	 * @return the exclusive upper bound of the given bucket, in nanoseconds
+	 */
+	public static long getUpperBound(int bucket) {
+		return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	public long[] getCounts() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+}
@@ -17,6 +17,8 @@
 package xyz.zuoyx.multiyggdrasil.transform;
 
 import static org.objectweb.asm.Opcodes.ASM9;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Handle;
@@ -26,17 +28,20 @@ public abstract class LdcTransformUnit implements TransformUnit {
 
 	@Override
 	public Optional<ClassVisitor> transform(ClassLoader classLoader, String className, ClassVisitor writer, TransformContext ctx) {
-		boolean matched = false;
+		// the rewriting below only looks up this map, so each constant is transformed once per class
+		Map<String, String> replacements = null;
 		for (String constant : ctx.getStringConstants()) {
 			Optional<String> transformed = transformLdc(constant);
 			if (transformed.isPresent() && !transformed.get().equals(constant)) {
-				matched = true;
-				break;
+				if (replacements == null)
+					replacements = new HashMap<>();
+				replacements.put(constant, transformed.get());
 			}
 		}
-		if (!matched)
+		if (replacements == null)
 			return Optional.empty();
 
+		Map<String, String> finalReplacements = replacements;
 		return Optional.of(new ClassVisitor(ASM9, writer) {
 
 			@Override
@@ -45,14 +50,10 @@ public abstract class LdcTransformUnit implements TransformUnit {
 
 					@Override
 					public void visitLdcInsn(Object cst) {
-						if (cst instanceof String) {
-							Optional<String> transformed = transformLdc((String) cst);
-							if (transformed.isPresent() && !transformed.get().equals(cst)) {
-								ctx.markModified();
-								super.visitLdcInsn(transformed.get());
-							} else {
-								super.visitLdcInsn(cst);
-							}
+						String transformed = cst instanceof String ? finalReplacements.get(cst) : null;
+						if (transformed != null) {
+							ctx.markModified();
+							super.visitLdcInsn(transformed);
 						} else {
 							super.visitLdcInsn(cst);
 						}
@@ -62,10 +63,10 @@ public abstract class LdcTransformUnit implements TransformUnit {
 					public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
 						for (int i = 0; i < bootstrapMethodArguments.length; i++) {
 							if (bootstrapMethodArguments[i] instanceof String constant) {
-								Optional<String> transformed = transformLdc(constant);
-								if (transformed.isPresent() && !transformed.get().equals(constant)) {
+								String transformed = finalReplacements.get(constant);
+								if (transformed != null) {
 									ctx.markModified();
-									bootstrapMethodArguments[i] = transformed.get();
+									bootstrapMethodArguments[i] = transformed;
 								}
 							}
 						}
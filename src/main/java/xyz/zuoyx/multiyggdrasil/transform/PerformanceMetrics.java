@@ -16,19 +16,57 @@
  */
 package xyz.zuoyx.multiyggdrasil.transform;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
 public class PerformanceMetrics {
 
-	volatile long totalTime;
-	volatile long matchTime;
-	volatile long scanTime;
-	volatile long analysisTime;
-	volatile long classesScanned;
-	volatile long classesSkipped;
+	final LongAdder totalTime = new LongAdder();
+	final LongAdder matchTime = new LongAdder();
+	final LongAdder scanTime = new LongAdder();
+	final LongAdder analysisTime = new LongAdder();
+	final LongAdder classesScanned = new LongAdder();
+	final LongAdder classesSkipped = new LongAdder();
+	final LongAdder classesFiltered = new LongAdder();
+	final LongAdder classesSkippedByCodeSource = new LongAdder();
+	final LongAdder cacheHits = new LongAdder();
+	final LongAdder cacheMisses = new LongAdder();
+	final LongAdder classesRetransformed = new LongAdder();
+	final LongAdder retransformBatches = new LongAdder();
+	final LongAdder retransformTime = new LongAdder();
+	final LongAccumulator retransformMaxBatchTime = new LongAccumulator(Long::max, 0);
+
+	private final Map<TransformUnit, UnitMetrics> unitMetrics = new ConcurrentHashMap<>();
+
+	public long getTotalTime() { return totalTime.sum(); }
+	public long getMatchTime() { return matchTime.sum(); }
+	public long getScanTime() { return scanTime.sum(); }
+	public long getAnalysisTime() { return analysisTime.sum(); }
+	public long getClassesScanned() { return classesScanned.sum(); }
+	public long getClassesSkipped() { return classesSkipped.sum(); }
+	public long getClassesFiltered() { return classesFiltered.sum(); }
+	public long getClassesSkippedByCodeSource() { return classesSkippedByCodeSource.sum(); }
+	public long getCacheHits() { return cacheHits.sum(); }
+	public long getCacheMisses() { return cacheMisses.sum(); }
+	public long getClassesRetransformed() { return classesRetransformed.sum(); }
+	public long getRetransformBatches() { return retransformBatches.sum(); }
+	public long getRetransformTime() { return retransformTime.sum(); }
+	public long getRetransformMaxBatchTime() { return retransformMaxBatchTime.get(); }
+
+	public void recordRetransformBatch(int classes, long nanos) {
+		classesRetransformed.add(classes);
+		retransformBatches.increment();
+		retransformTime.add(nanos);
+		retransformMaxBatchTime.accumulate(nanos);
+	}
 
-	public synchronized long getTotalTime() { return totalTime; }
-	public synchronized long getMatchTime() { return matchTime; }
-	public synchronized long getScanTime() { return scanTime; }
-	public synchronized long getAnalysisTime() { return analysisTime; }
-	public synchronized long getClassesScanned() { return classesScanned; }
-	public synchronized long getClassesSkipped() { return classesSkipped; }
+	public UnitMetrics getUnitMetrics(TransformUnit unit) {
+		UnitMetrics metrics = unitMetrics.get(unit);
+		if (metrics == null) {
+			metrics = unitMetrics.computeIfAbsent(unit, it -> new UnitMetrics());
+		}
+		return metrics;
+	}
 }
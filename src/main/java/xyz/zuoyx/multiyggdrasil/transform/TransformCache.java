@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.INFO;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Persists transformation results across runs.
+ * <p>
+ * The index file is memory-mapped and laid out as an open-addressing hash table, keyed by the hash of the
+ * original class and the set of units it's offered to. Each slot points to a record in the append-only data file,
+ * or marks the class as not transformed. Both files are discarded when the fingerprint of the transformer setup changes.
+ * <p>
+ * Lookups don't take any lock: a slot is published by writing its key hash last, with release semantics.
+ */
+final class TransformCache {
+
+	static final class Key {
+		final long hi;
+		final long lo;
+
+		private Key(long hi, long lo) {
+			this.hi = hi;
+			this.lo = lo;
+		}
+	}
+
+	static final class Entry {
+		static final Entry UNCHANGED = new Entry(0, null);
+
+		/** Bit i is set if the i-th cached unit was applied */
+		final long appliedUnits;
+		final /* nullable */ byte[] result;
+
+		Entry(long appliedUnits, byte[] result) {
+			this.appliedUnits = appliedUnits;
+			this.result = result;
+		}
+	}
+
+	private static final int MAGIC = 0x4d594343; // "MYCC"
+	private static final int FORMAT_VERSION = 2;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_FINGERPRINT = 8;
+	private static final int FINGERPRINT_SIZE = 32;
+
+	private static final int CAPACITY = 1 << 16;
+	private static final int MAX_ENTRIES = CAPACITY / 4 * 3;
+
+	// slot: key hi (8), key lo (8), record offset (8), record length (4), padding (4)
+	private static final int SLOT_SIZE = 32;
+	private static final long NO_RECORD = -1;
+
+	// record: key hi (8), key lo (8), applied units (8), bytecode
+	private static final int RECORD_HEADER_SIZE = 24;
+
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(TransformCache::newDigest);
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static TransformCache open(Path directory, byte[] fingerprint) throws IOException {
+		if (fingerprint.length != FINGERPRINT_SIZE)
+			throw new IllegalArgumentException("Fingerprint must be " + FINGERPRINT_SIZE + " bytes");
+
+		Files.createDirectories(directory);
+		FileChannel indexChannel = FileChannel.open(directory.resolve("index.bin"), CREATE, READ, WRITE);
+		FileChannel dataChannel = null;
+		try {
+			if (indexChannel.tryLock() == null)
+				throw new IOException("Cache directory is being used by another process: " + directory);
+
+			dataChannel = FileChannel.open(directory.resolve("data.bin"), CREATE, READ, WRITE);
+
+			boolean valid = hasFingerprint(indexChannel, fingerprint);
+			if (!valid) {
+				indexChannel.truncate(0);
+				dataChannel.truncate(0);
+			}
+
+			MappedByteBuffer index = indexChannel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) CAPACITY * SLOT_SIZE);
+			if (!valid) {
+				index.put(HEADER_FINGERPRINT, fingerprint);
+				index.putInt(HEADER_VERSION, FORMAT_VERSION);
+				index.putInt(HEADER_MAGIC, MAGIC);
+			}
+
+			int entries = 0;
+			for (int i = 0; i < CAPACITY; i++) {
+				if (index.getLong(HEADER_SIZE + i * SLOT_SIZE) != 0)
+					entries++;
+			}
+			log(INFO, "Transform cache: " + directory + " (" + (valid ? entries + " entries" : "created") + ")");
+			return new TransformCache(indexChannel, dataChannel, index, entries);
+		} catch (IOException | RuntimeException e) {
+			indexChannel.close();
+			if (dataChannel != null)
+				dataChannel.close();
+			throw e;
+		}
+	}
+
+	private static boolean hasFingerprint(FileChannel indexChannel, byte[] fingerprint) throws IOException {
+		if (indexChannel.size() < HEADER_SIZE)
+			return false;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(indexChannel, header, 0);
+		byte[] actual = new byte[FINGERPRINT_SIZE];
+		header.get(HEADER_FINGERPRINT, actual);
+		return header.getInt(HEADER_MAGIC) == MAGIC
+				&& header.getInt(HEADER_VERSION) == FORMAT_VERSION
+				&& Arrays.equals(actual, fingerprint);
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, position + buf.position());
+			if (n < 0)
+				throw new IOException("Unexpected end of file");
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private final FileChannel indexChannel; // holds the lock on the cache directory
+	private final FileChannel dataChannel;
+	private final MappedByteBuffer index;
+
+	// guarded by this
+	private int entries;
+	private long dataEnd;
+	private boolean fullReported;
+
+	private TransformCache(FileChannel indexChannel, FileChannel dataChannel, MappedByteBuffer index, int entries) throws IOException {
+		this.indexChannel = indexChannel;
+		this.dataChannel = dataChannel;
+		this.index = index;
+		this.entries = entries;
+		this.dataEnd = dataChannel.size();
+	}
+
+	/**
+	 * @param candidateUnits bit i is set if the i-th cached unit is offered the class
+	 */
+	Key keyOf(String className, byte[] classfile, long candidateUnits) {
+		MessageDigest digest = DIGEST.get();
+		digest.update(className.getBytes(UTF_8));
+		digest.update((byte) 0);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			digest.update((byte) (candidateUnits >>> shift));
+		}
+		digest.update(classfile);
+		ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+		long hi = hash.getLong();
+		long lo = hash.getLong();
+		// zero marks an empty slot
+		return new Key(hi == 0 ? 1 : hi, lo);
+	}
+
+	/**
+	 * @return the cached entry, or null if the class isn't in the cache
+	 */
+	/* nullable */ Entry get(Key key) throws IOException {
+		int mask = CAPACITY - 1;
+		int i = (int) key.lo & mask;
+		for (int probes = 0; probes < CAPACITY; probes++, i = (i + 1) & mask) {
+			int slot = HEADER_SIZE + i * SLOT_SIZE;
+			long hi = (long) LONG.getAcquire(index, slot);
+			if (hi == 0)
+				return null;
+			if (hi == key.hi && index.getLong(slot + 8) == key.lo) {
+				long offset = index.getLong(slot + 16);
+				if (offset == NO_RECORD)
+					return Entry.UNCHANGED;
+				return readRecord(key, offset, index.getInt(slot + 24));
+			}
+		}
+		return null;
+	}
+
+	private /* nullable */ Entry readRecord(Key key, long offset, int length) throws IOException {
+		if (length < RECORD_HEADER_SIZE || offset + length > dataChannel.size())
+			return null;
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		readFully(dataChannel, buf, offset);
+		buf.flip();
+		// guards against a data file that doesn't match the index, e.g. after a crash
+		if (buf.getLong() != key.hi || buf.getLong() != key.lo)
+			return null;
+		long appliedUnits = buf.getLong();
+		byte[] result = new byte[length - RECORD_HEADER_SIZE];
+		buf.get(result);
+		return new Entry(appliedUnits, result);
+	}
+
+	/**
+	 * Stores a transformation result.
+	 *
+	 * @param result the transformed bytecode, or null if the class isn't transformed
+	 */
+	synchronized void put(Key key, long appliedUnits, /* nullable */ byte[] result) throws IOException {
+		if (entries >= MAX_ENTRIES) {
+			if (!fullReported) {
+				fullReported = true;
+				log(INFO, "Transform cache is full, new results won't be cached");
+			}
+			return;
+		}
+
+		int mask = CAPACITY - 1;
+		int i = (int) key.lo & mask;
+		int slot;
+		for (;;) {
+			slot = HEADER_SIZE + i * SLOT_SIZE;
+			long hi = index.getLong(slot);
+			if (hi == 0)
+				break;
+			if (hi == key.hi && index.getLong(slot + 8) == key.lo)
+				return; // stored by another thread
+			i = (i + 1) & mask;
+		}
+
+		long offset = NO_RECORD;
+		int length = 0;
+		if (result != null) {
+			length = RECORD_HEADER_SIZE + result.length;
+			ByteBuffer buf = ByteBuffer.allocate(length);
+			buf.putLong(key.hi).putLong(key.lo).putLong(appliedUnits).put(result);
+			buf.flip();
+			offset = dataEnd;
+			while (buf.hasRemaining()) {
+				dataChannel.write(buf, offset + buf.position());
+			}
+			dataEnd += length;
+		}
+
+		index.putLong(slot + 8, key.lo);
+		index.putLong(slot + 16, offset);
+		index.putInt(slot + 24, length);
+		LONG.setRelease(index, slot, key.hi);
+		entries++;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of the registered transform units, which is built when the units change.
+ * <p>
+ * Units are looked up by the exact names of their target classes, or by their trigger constants.
+ * The order of the units returned is always the registration order.
+ */
+public final class TransformIndex {
+
+	private static final TransformUnit[] NO_UNITS = new TransformUnit[0];
+
+	final TransformUnit[] units;
+
+	/** Units declaring neither target classes nor trigger constants */
+	private final TransformUnit[] genericUnits;
+
+	/** For each target class, the units targeting it, merged with the generic units */
+	private final Map<String, TransformUnit[]> classTargets = new HashMap<>();
+
+	private final TransformUnit[] triggeredUnits;
+
+	/** For each triggered unit, the set of patterns in the scanner that trigger it */
+	private final long[] triggerMasks;
+
+	private final ConstantPoolScanner scanner;
+
+	public TransformIndex(TransformUnit[] units) {
+		this.units = units;
+
+		List<TransformUnit> generic = new ArrayList<>();
+		List<TransformUnit> triggered = new ArrayList<>();
+		List<String> patterns = new ArrayList<>();
+		List<Long> masks = new ArrayList<>();
+		Map<String, List<TransformUnit>> targets = new HashMap<>();
+		for (TransformUnit unit : units) {
+			Set<String> targetClasses = unit.getTargetClasses();
+			Set<String> triggerConstants = unit.getTriggerConstants();
+			if (targetClasses.isEmpty() && triggerConstants.isEmpty()) {
+				generic.add(unit);
+				continue;
+			}
+			for (String className : targetClasses) {
+				targets.computeIfAbsent(className, k -> new ArrayList<>()).add(unit);
+			}
+			if (!triggerConstants.isEmpty()) {
+				long mask = 0;
+				for (String trigger : triggerConstants) {
+					int patternIdx = patterns.indexOf(trigger);
+					if (patternIdx == -1) {
+						patternIdx = patterns.size();
+						patterns.add(trigger);
+					}
+					mask |= 1L << patternIdx;
+				}
+				triggered.add(unit);
+				masks.add(mask);
+			}
+		}
+
+		genericUnits = generic.toArray(NO_UNITS);
+		triggeredUnits = triggered.toArray(NO_UNITS);
+		triggerMasks = masks.stream().mapToLong(Long::longValue).toArray();
+		scanner = new ConstantPoolScanner(patterns.toArray(new String[0]));
+		targets.forEach((className, targeting) -> {
+			List<TransformUnit> merged = new ArrayList<>();
+			for (TransformUnit unit : units) {
+				if (generic.contains(unit) || targeting.contains(unit)) {
+					merged.add(unit);
+				}
+			}
+			classTargets.put(className, merged.toArray(NO_UNITS));
+		});
+	}
+
+	public TransformIndex withUnit(TransformUnit unit) {
+		TransformUnit[] newUnits = new TransformUnit[units.length + 1];
+		System.arraycopy(units, 0, newUnits, 0, units.length);
+		newUnits[units.length] = unit;
+		return new TransformIndex(newUnits);
+	}
+
+	/**
+	 * Returns the units selected by the class name only, including the generic units.
+	 */
+	public TransformUnit[] getTargetingUnits(String className) {
+		TransformUnit[] targeting = classTargets.get(className);
+		return targeting == null ? genericUnits : targeting;
+	}
+
+	public boolean hasTriggeredUnits() {
+		return triggeredUnits.length != 0;
+	}
+
+	/**
+	 * Returns the units that should be applied to a class,
+	 * given the units targeting it and its bytecode.
+	 */
+	public TransformUnit[] select(TransformUnit[] targeting, byte[] classfile) {
+		long matched = scanner.scan(classfile);
+		if (matched == 0) {
+			return targeting;
+		}
+
+		List<TransformUnit> selected = new ArrayList<>();
+		int triggeredIdx = 0;
+		for (TransformUnit unit : units) {
+			boolean triggered = false;
+			if (triggeredIdx < triggeredUnits.length && triggeredUnits[triggeredIdx] == unit) {
+				triggered = (triggerMasks[triggeredIdx] & matched) != 0;
+				triggeredIdx++;
+			}
+			if (triggered || contains(targeting, unit)) {
+				selected.add(unit);
+			}
+		}
+		return selected.toArray(NO_UNITS);
+	}
+
+	private static boolean contains(TransformUnit[] units, TransformUnit unit) {
+		for (TransformUnit element : units) {
+			if (element == unit) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -16,11 +16,41 @@
  */
 package xyz.zuoyx.multiyggdrasil.transform;
 
+import static java.util.Collections.emptySet;
 import java.util.Optional;
+import java.util.Set;
 import org.objectweb.asm.ClassVisitor;
 
 public interface TransformUnit {
 
 	Optional<ClassVisitor> transform(ClassLoader classLoader, String className, ClassVisitor writer, TransformContext context);
 
+	/**
+	 * Returns the names of the classes that this unit may transform.
+	 * <p>
+	 * If a unit declares neither target classes nor trigger constants, it is applied to every class.
+	 */
+	default Set<String> getTargetClasses() {
+		return emptySet();
+	}
+
+	/**
+	 * Returns the strings that trigger this unit.
+	 * <p>
+	 * The unit is applied to a class only if one of its string constants contains any of these strings,
+	 * unless the class is also listed in {@link #getTargetClasses()}.
+	 */
+	default Set<String> getTriggerConstants() {
+		return emptySet();
+	}
+
+	/**
+	 * Returns a key that identifies the output of this unit, for the persistent transform cache.
+	 * <p>
+	 * The class itself and the agent options are already accounted for. Units whose output depends on
+	 * other state should include it in the key, or return empty if the output can't be reused across runs.
+	 */
+	default Optional<String> getCacheKey() {
+		return Optional.of(getClass().getName());
+	}
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.transform;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a single {@link TransformUnit}.
+ */
+public class UnitMetrics {
+
+	/** Number of classes the unit was offered */
+	final LongAdder invocations = new LongAdder();
+	/** Number of classes the unit returned a visitor for */
+	final LongAdder matched = new LongAdder();
+	/** Number of classes the unit actually modified */
+	final LongAdder modified = new LongAdder();
+	/** Time spent in {@link TransformUnit#transform}, namely constructing the visitor */
+	final LatencyHistogram visitorTime = new LatencyHistogram();
+
+	public long getInvocations() { return invocations.sum(); }
+	public long getMatched() { return matched.sum(); }
+	public long getModified() { return modified.sum(); }
+	public LatencyHistogram getVisitorTime() { return visitorTime; }
+}
@@ -26,12 +26,9 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Stream;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -39,10 +36,11 @@ import org.objectweb.asm.Type;
 import xyz.zuoyx.multiyggdrasil.transform.CallbackMethod;
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
 import xyz.zuoyx.multiyggdrasil.transform.TransformUnit;
+import xyz.zuoyx.multiyggdrasil.util.ConcurrentWeakIdentitySet;
 
 public class AuthlibLogInterceptor implements TransformUnit {
 
-	private static final Set<ClassLoader> interceptedClassloaders = Collections.newSetFromMap(new WeakHashMap<>());
+	private static final ConcurrentWeakIdentitySet<ClassLoader> interceptedClassloaders = new ConcurrentWeakIdentitySet<>();
 
 	@CallbackMethod
 	public static void onClassLoading(ClassLoader classLoader) {
@@ -54,10 +52,8 @@ public class AuthlibLogInterceptor implements TransformUnit {
 		}
 
 		ClassLoader clLog4j = classLogManager.getClassLoader();
-		synchronized (interceptedClassloaders) {
-			if (!interceptedClassloaders.add(clLog4j)) {
-				return;
-			}
+		if (clLog4j == null || !interceptedClassloaders.add(clLog4j)) {
+			return;
 		}
 
 		try {
@@ -226,10 +222,8 @@ public class AuthlibLogInterceptor implements TransformUnit {
 	@Override
 	public Optional<ClassVisitor> transform(ClassLoader classLoader, String className, ClassVisitor writer, TransformContext ctx) {
 		if (className.startsWith("com.mojang.authlib.")) {
-			synchronized (interceptedClassloaders) {
-				if (interceptedClassloaders.contains(classLoader)) {
-					return Optional.empty();
-				}
+			if (interceptedClassloaders.contains(classLoader)) {
+				return Optional.empty();
 			}
 			return Optional.of(new ClassVisitor(ASM9, writer) {
 
@@ -255,6 +249,12 @@ public class AuthlibLogInterceptor implements TransformUnit {
 		return Optional.empty();
 	}
 
+	@Override
+	public Optional<String> getCacheKey() {
+		// depends on the class loaders that have been intercepted
+		return Optional.empty();
+	}
+
 	@Override
 	public String toString() {
 		return "Authlib Log Interceptor";
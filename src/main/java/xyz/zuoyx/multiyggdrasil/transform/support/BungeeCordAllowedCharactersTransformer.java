@@ -19,6 +19,7 @@ package xyz.zuoyx.multiyggdrasil.transform.support;
 import static org.objectweb.asm.Opcodes.ASM9;
 import static org.objectweb.asm.Opcodes.ISTORE;
 import java.util.Optional;
+import java.util.Set;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
@@ -56,6 +57,11 @@ public class BungeeCordAllowedCharactersTransformer implements TransformUnit {
 		return Optional.empty();
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("net.md_5.bungee.util.AllowedCharacters");
+	}
+
 	@Override
 	public String toString() {
 		return "BungeeCord Allowed Characters Transformer";
@@ -20,6 +20,7 @@ import static org.objectweb.asm.Opcodes.ASM9;
 import static org.objectweb.asm.Opcodes.ICONST_1;
 import static org.objectweb.asm.Opcodes.IRETURN;
 import java.util.Optional;
+import java.util.Set;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
@@ -58,6 +59,11 @@ public class BungeeCordProfileKeyTransformUnit implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("net.md_5.bungee.EncryptionUtil");
+	}
+
 	@Override
 	public String toString() {
 		return "BungeeCord Profile Key Transformer";
@@ -25,6 +25,7 @@ import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.RETURN;
 
 import java.util.Optional;
+import java.util.Set;
 
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
@@ -74,6 +75,11 @@ public class CitizensTransformer implements TransformUnit {
 		return Optional.empty();
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("net.citizensnpcs.Settings$Setting");
+	}
+
 	@Override
 	public String toString() {
 		return "Citizens2 Support";
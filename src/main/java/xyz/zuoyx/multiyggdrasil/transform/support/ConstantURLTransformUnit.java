@@ -17,6 +17,7 @@
 package xyz.zuoyx.multiyggdrasil.transform.support;
 
 import java.util.Optional;
+import java.util.Set;
 
 import xyz.zuoyx.multiyggdrasil.httpd.URLProcessor;
 import xyz.zuoyx.multiyggdrasil.transform.LdcTransformUnit;
@@ -34,6 +35,20 @@ public class ConstantURLTransformUnit extends LdcTransformUnit {
 		return urlProcessor.transformURL(input);
 	}
 
+	@Override
+	public Set<String> getTriggerConstants() {
+		return Set.of("http");
+	}
+
+	@Override
+	public Optional<String> getCacheKey() {
+		if (urlProcessor.isInProcess()) {
+			return Optional.of(getClass().getName() + ":" + URLProcessor.IN_PROCESS_PROTOCOL);
+		}
+		// the transformed URLs contain the port of the local HTTP server
+		return urlProcessor.getFixedLocalApiPort().map(port -> getClass().getName() + ":" + port);
+	}
+
 	@Override
 	public String toString() {
 		return "Constant URL Transformer";
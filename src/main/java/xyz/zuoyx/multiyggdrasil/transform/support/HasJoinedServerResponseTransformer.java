@@ -25,6 +25,7 @@ import static org.objectweb.asm.Opcodes.GETFIELD;
 import static org.objectweb.asm.Opcodes.PUTFIELD;
 
 import java.util.Optional;
+import java.util.Set;
 
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
 import xyz.zuoyx.multiyggdrasil.transform.TransformUnit;
@@ -170,6 +171,11 @@ public class HasJoinedServerResponseTransformer implements TransformUnit {
         }
     }
 
+    @Override
+    public Set<String> getTargetClasses() {
+        return Set.of("com.mojang.authlib.yggdrasil.response.HasJoinedMinecraftServerResponse");
+    }
+
     @Override
     public String toString() {
         return "Has Joined Server Response Transformer";
@@ -21,6 +21,7 @@ import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
 import static org.objectweb.asm.Opcodes.ALOAD;
 
 import java.util.Optional;
+import java.util.Set;
 
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -87,6 +88,11 @@ public class HasJoinedServerTransformer implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("com.mojang.authlib.yggdrasil.YggdrasilMinecraftSessionService");
+	}
+
 	@Override
 	public String toString() {
 		return "Has Joined Server Transformer";
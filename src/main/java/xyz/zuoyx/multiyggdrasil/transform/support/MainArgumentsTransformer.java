@@ -23,6 +23,7 @@ import static org.objectweb.asm.Opcodes.ASM9;
 import static org.objectweb.asm.Opcodes.ASTORE;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -62,6 +63,11 @@ public class MainArgumentsTransformer implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("net.minecraft.client.main.Main");
+	}
+
 	@Override
 	public String toString() {
 		return "Main Arguments Transformer";
@@ -23,6 +23,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -119,6 +120,11 @@ public class SkinWhitelistTransformUnit implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("com.mojang.authlib.yggdrasil.YggdrasilMinecraftSessionService", "com.mojang.authlib.yggdrasil.TextureUrlChecker");
+	}
+
 	@Override
 	public String toString() {
 		return "Texture Whitelist Transformer";
@@ -18,6 +18,7 @@ package xyz.zuoyx.multiyggdrasil.transform.support;
 
 import static org.objectweb.asm.Opcodes.*;
 import java.util.Optional;
+import java.util.Set;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
@@ -95,6 +96,11 @@ public class UsernameCharacterCheckTransformer implements TransformUnit {
 		});
 	}
 
+	@Override
+	public Set<String> getTriggerConstants() {
+		return Set.of("Invalid characters in username");
+	}
+
 	@Override
 	public String toString() {
 		return "Username Character Check Transformer";
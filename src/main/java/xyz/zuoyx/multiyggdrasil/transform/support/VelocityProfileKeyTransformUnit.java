@@ -20,6 +20,7 @@ import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.ASM9;
 import static org.objectweb.asm.Opcodes.GETSTATIC;
 import java.util.Optional;
+import java.util.Set;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
 import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
@@ -58,6 +59,11 @@ public class VelocityProfileKeyTransformUnit implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("com.velocitypowered.proxy.crypto.IdentifiedKeyImpl");
+	}
+
 	@Override
 	public String toString() {
 		return "Velocity Profile Key Transformer";
@@ -35,6 +35,7 @@ import java.security.Signature;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -222,6 +223,11 @@ public class YggdrasilKeyTransformUnit implements TransformUnit {
 		}
 	}
 
+	@Override
+	public Set<String> getTargetClasses() {
+		return Set.of("com.mojang.authlib.properties.Property", "com.mojang.authlib.yggdrasil.YggdrasilServicesKeyInfo");
+	}
+
 	@Override
 	public String toString() {
 		return "Yggdrasil Public Key Transformer";
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import static java.util.Objects.requireNonNull;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe set that compares its elements by identity and doesn't prevent them from being garbage collected.
+ * <p>
+ * Unlike a set backed by a synchronized {@link java.util.WeakHashMap}, lookups don't take any lock.
+ */
+public final class ConcurrentWeakIdentitySet<T> {
+
+	private static final class WeakKey<T> extends WeakReference<T> {
+		private final int hash;
+
+		WeakKey(T referent, ReferenceQueue<? super T> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			Object referent = get();
+			if (referent == null) {
+				// a cleared key only equals itself, so that it can still be removed
+				return false;
+			}
+			if (obj instanceof WeakKey<?> other) {
+				return referent == other.get();
+			}
+			if (obj instanceof LookupKey other) {
+				return referent == other.referent;
+			}
+			return false;
+		}
+	}
+
+	private static final class LookupKey {
+		private final Object referent;
+
+		LookupKey(Object referent) {
+			this.referent = referent;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(referent);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof WeakKey<?> key && key.get() == referent;
+		}
+	}
+
+	private final ConcurrentHashMap<Object, Boolean> map = new ConcurrentHashMap<>();
+	private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+	public boolean contains(T element) {
+		if (element == null) {
+			return false;
+		}
+		return map.containsKey(new LookupKey(element));
+	}
+
+	/**
+	 * @return true if the element wasn't in the set
+	 */
+	public boolean add(T element) {
+		requireNonNull(element);
+		expungeStaleKeys();
+		return map.putIfAbsent(new WeakKey<>(element, queue), Boolean.TRUE) == null;
+	}
+
+	public boolean remove(T element) {
+		if (element == null) {
+			return false;
+		}
+		expungeStaleKeys();
+		return map.remove(new LookupKey(element)) != null;
+	}
+
+	public int size() {
+		expungeStaleKeys();
+		return map.size();
+	}
+
+	private void expungeStaleKeys() {
+		Reference<? extends T> ref;
+		while ((ref = queue.poll()) != null) {
+			map.remove(ref);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded cache whose entries expire after their own time-to-live.
+ * <p>
+ * The cache is bounded by the total weight of its values, which is their count unless a weigher is given.
+ * When the cache is full, the least recently used entries are evicted, except that the expired ones among the first
+ * few of them go first. A cache with a maximum weight of 0 holds nothing.
+ */
+public class ExpiringCache<K, V> {
+
+	// how many of the least recently used entries an insertion into a full cache checks for expiry
+	private static final int EXPIRY_SCAN_LIMIT = 8;
+
+	private static final class Entry<V> {
+		final V value;
+		final long weight;
+		final long expiresAt;
+
+		Entry(V value, long weight, long expiresAt) {
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+	private final LongSupplier clock; // nanoseconds
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalWeight; // guarded by entries
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ExpiringCache(int maxSize) {
+		this(maxSize, System::nanoTime);
+	}
+
+	public ExpiringCache(int maxSize, LongSupplier nanoClock) {
+		this(maxSize, value -> 1, nanoClock);
+	}
+
+	public ExpiringCache(long maxWeight, ToLongFunction<? super V> weigher) {
+		this(maxWeight, weigher, System::nanoTime);
+	}
+
+	public ExpiringCache(long maxWeight, ToLongFunction<? super V> weigher, LongSupplier nanoClock) {
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.clock = nanoClock;
+	}
+
+	/**
+	 * @return the cached value, or null if it's absent or expired
+	 */
+	public /* nullable */ V get(K key) {
+		long now = clock.getAsLong();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && now - entry.expiresAt >= 0) {
+				entries.remove(key);
+				totalWeight -= entry.weight;
+				entry = null;
+			}
+			if (entry == null) {
+				misses.increment();
+				return null;
+			}
+			hits.increment();
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Caches a value. Nothing is cached if the time-to-live isn't positive, or if the value alone outweighs the cache.
+	 */
+	public void put(K key, V value, long ttlMillis) {
+		long weight = weigher.applyAsLong(value);
+		if (ttlMillis <= 0 || weight > maxWeight)
+			return;
+		long now = clock.getAsLong();
+		Entry<V> entry = new Entry<>(value, weight, now + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+		synchronized (entries) {
+			Entry<V> replaced = entries.put(key, entry);
+			if (replaced != null)
+				totalWeight -= replaced.weight;
+			totalWeight += weight;
+			if (totalWeight > maxWeight) {
+				// prefer dropping what has expired anyway, but don't walk the whole map on every insertion
+				Iterator<Entry<V>> it = entries.values().iterator();
+				for (int scanned = 0; scanned < EXPIRY_SCAN_LIMIT && it.hasNext(); scanned++) {
+					Entry<V> e = it.next();
+					if (now - e.expiresAt >= 0) {
+						it.remove();
+						totalWeight -= e.weight;
+					}
+				}
+				Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+				while (totalWeight > maxWeight) {
+					totalWeight -= eldest.next().getValue().weight;
+					eldest.remove();
+					evictions.increment();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			totalWeight = 0;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getWeight() {
+		synchronized (entries) {
+			return totalWeight;
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+}
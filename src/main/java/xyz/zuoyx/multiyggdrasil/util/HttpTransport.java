@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import static xyz.zuoyx.multiyggdrasil.util.IOUtils.asBytes;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import xyz.zuoyx.multiyggdrasil.Config;
+
+/**
+ * Sends requests to upstream servers.
+ * <p>
+ * Requests are sent with an {@link HttpClient}, which keeps the connections alive and multiplexes
+ * requests over HTTP/2 when the server supports it. Each authentication server gets its own clients
+ * from {@link #dedicated(Proxy)}, so it doesn't share a connection pool with anything else. All the other
+ * hosts, which the reverse proxy and the texture requests may pick freely, share the same clients.
+ * {@code HttpClient} can't connect through SOCKS proxies, so {@link HttpURLConnection} is used instead
+ * when a proxy is specified.
+ */
+public abstract class HttpTransport {
+
+	private static final PooledTransport DIRECT = new PooledTransport();
+	private static final Map<Proxy, HttpTransport> PROXIED = new ConcurrentHashMap<>();
+
+	public static HttpTransport of(/* nullable */ Proxy proxy) {
+		if (proxy == null || proxy.type() == Proxy.Type.DIRECT) {
+			return DIRECT;
+		}
+		return PROXIED.computeIfAbsent(proxy, URLConnectionTransport::new);
+	}
+
+	/**
+	 * Returns a transport with connections of its own, for an authentication server.
+	 */
+	public static HttpTransport dedicated(/* nullable */ Proxy proxy) {
+		if (proxy == null || proxy.type() == Proxy.Type.DIRECT) {
+			return new PooledTransport();
+		}
+		return of(proxy);
+	}
+
+	/**
+	 * Returns the shared client for the scheme of the given URI, for callers that need
+	 * to stream the bodies themselves.
+	 */
+	public static HttpClient pooledClient(URI uri) {
+		return DIRECT.clientFor(uri);
+	}
+
+	/**
+	 * Sends a request and reads the whole response body.
+	 *
+	 * @param payload the request body, or null if there's none
+	 * @param contentType the content type of the payload, or null if there's no payload
+	 * @throws IOException if the request fails, or the server responds with an error status
+	 */
+	public abstract byte[] request(String method, String url, /* nullable */ byte[] payload, /* nullable */ String contentType) throws URISyntaxException, IOException;
+
+	private static final class PooledTransport extends HttpTransport {
+
+		// each client keeps a connection pool per host, one client per scheme is enough
+		private volatile /* nullable */ HttpClient httpsClient;
+		private volatile /* nullable */ HttpClient httpClient;
+
+		private HttpClient clientFor(URI uri) {
+			boolean https = "https".equalsIgnoreCase(uri.getScheme());
+			HttpClient client = https ? httpsClient : httpClient;
+			if (client != null) {
+				return client;
+			}
+			synchronized (this) {
+				client = https ? httpsClient : httpClient;
+				if (client == null) {
+					client = newClient(https);
+					if (https) {
+						httpsClient = client;
+					} else {
+						httpClient = client;
+					}
+				}
+				return client;
+			}
+		}
+
+		private static HttpClient newClient(boolean https) {
+			HttpClient.Builder builder = HttpClient.newBuilder()
+					// over plain HTTP, trying HTTP/2 means an upgrade request, which some servers handle badly
+					.version(https ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+					.followRedirects(HttpClient.Redirect.NORMAL);
+			// zero means no timeout, as in HttpURLConnection
+			if (Config.upstreamConnectTimeout > 0) {
+				builder.connectTimeout(Duration.ofMillis(Config.upstreamConnectTimeout));
+			}
+			return builder.build();
+		}
+
+		@Override
+		public byte[] request(String method, String url, byte[] payload, String contentType) throws URISyntaxException, IOException {
+			URI uri = new URI(url);
+			HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+					.method(method, payload == null ? BodyPublishers.noBody() : BodyPublishers.ofByteArray(payload));
+			if (Config.upstreamReadTimeout > 0) {
+				request.timeout(Duration.ofMillis(Config.upstreamReadTimeout));
+			}
+			if (contentType != null) {
+				request.header("Content-Type", contentType);
+			}
+
+			HttpResponse<byte[]> response;
+			try {
+				response = clientFor(uri).send(request.build(), BodyHandlers.ofByteArray());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while requesting " + url);
+			}
+			// consistent with HttpURLConnection.getInputStream()
+			if (response.statusCode() >= 400) {
+				throw new IOException("Server returned HTTP response code: " + response.statusCode() + " for URL: " + url);
+			}
+			return response.body();
+		}
+	}
+
+	private static final class URLConnectionTransport extends HttpTransport {
+
+		private final Proxy proxy;
+
+		URLConnectionTransport(Proxy proxy) {
+			this.proxy = proxy;
+		}
+
+		@Override
+		public byte[] request(String method, String url, byte[] payload, String contentType) throws URISyntaxException, IOException {
+			HttpURLConnection conn = (HttpURLConnection) new URI(url).toURL().openConnection(proxy);
+			conn.setConnectTimeout(Config.upstreamConnectTimeout);
+			conn.setReadTimeout(Config.upstreamReadTimeout);
+			conn.setRequestMethod(method);
+			if (payload != null) {
+				conn.setDoOutput(true);
+				conn.setRequestProperty("Content-Type", contentType);
+				try (OutputStream out = conn.getOutputStream()) {
+					out.write(payload);
+				}
+			}
+			try (InputStream in = conn.getInputStream()) {
+				return asBytes(in);
+			}
+		}
+	}
+}
@@ -22,9 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
-import java.net.HttpURLConnection;
 import java.net.Proxy;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -36,24 +34,12 @@ public final class IOUtils {
 	public static final String CONTENT_TYPE_TEXT = "text/plain; charset=utf-8";
 	public static final String CONTENT_TYPE_IMAGE = "image/png";
 
-	private static HttpURLConnection createConnection(String url, Proxy proxy) throws URISyntaxException, IOException {
-		if (proxy == null) {
-			return (HttpURLConnection) new URI(url).toURL().openConnection();
-		} else {
-			return (HttpURLConnection) new URI(url).toURL().openConnection(proxy);
-		}
-	}
-
 	public static byte[] http(String method, String url) throws URISyntaxException, IOException {
 		return http(method, url, null);
 	}
 
 	public static byte[] http(String method, String url, Proxy proxy) throws URISyntaxException, IOException {
-		HttpURLConnection conn = createConnection(url, proxy);
-		conn.setRequestMethod(method);
-		try (InputStream in = conn.getInputStream()) {
-			return asBytes(in);
-		}
+		return HttpTransport.of(proxy).request(method, url, null, null);
 	}
 
 	public static byte[] http(String method, String url, byte[] payload, String contentType) throws URISyntaxException, IOException {
@@ -61,16 +47,7 @@ public final class IOUtils {
 	}
 
 	public static byte[] http(String method, String url, byte[] payload, String contentType, Proxy proxy) throws URISyntaxException, IOException {
-		HttpURLConnection conn = createConnection(url, proxy);
-		conn.setRequestMethod(method);
-		conn.setDoOutput(true);
-		conn.setRequestProperty("Content-Type", contentType);
-		try (OutputStream out = conn.getOutputStream()) {
-			out.write(payload);
-		}
-		try (InputStream in = conn.getInputStream()) {
-			return asBytes(in);
-		}
+		return HttpTransport.of(proxy).request(method, url, payload, contentType);
 	}
 
 	public static void sendResponse(HttpExchange exchange, int status, String mimeType, byte[] data) throws IOException {
@@ -25,6 +25,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
 public final class JsonUtils {
 
@@ -34,6 +35,15 @@ public final class JsonUtils {
 		return JsonParser.parseString(jsonText);
 	}
 
+	/**
+	 * Creates a reader that parses UTF-8 JSON as leniently as {@link #parseJson(String)}.
+	 */
+	public static JsonReader newJsonReader(byte[] json) {
+		JsonReader reader = new JsonReader(new UTF8ByteArrayReader(json));
+		reader.setLenient(true);
+		return reader;
+	}
+
 	public static String toJsonString(Object json) {
 		return gson.toJson(json);
 	}
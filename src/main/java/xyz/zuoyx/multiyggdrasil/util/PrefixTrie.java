@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of prefixes, which tells whether a string starts with any of them
+ * in time proportional to the length of the matched prefix.
+ */
+public final class PrefixTrie {
+
+	private static final class Node {
+		boolean terminal;
+		char[] labels = new char[0];
+		Node[] children = new Node[0];
+
+		/* nullable */ Node child(char c) {
+			char[] labels = this.labels;
+			for (int i = 0; i < labels.length; i++) {
+				if (labels[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final class Builder {
+		boolean terminal;
+		Map<Character, Builder> children = new TreeMap<>();
+
+		Node build() {
+			Node node = new Node();
+			node.terminal = terminal;
+			node.labels = new char[children.size()];
+			node.children = new Node[children.size()];
+			int i = 0;
+			for (Map.Entry<Character, Builder> child : children.entrySet()) {
+				node.labels[i] = child.getKey();
+				node.children[i] = child.getValue().build();
+				i++;
+			}
+			return node;
+		}
+	}
+
+	private final Node root;
+
+	public PrefixTrie(Collection<String> prefixes) {
+		Builder root = new Builder();
+		for (String prefix : prefixes) {
+			Builder node = root;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Builder());
+			}
+			node.terminal = true;
+		}
+		this.root = root.build();
+	}
+
+	/**
+	 * @return true if the string starts with any of the prefixes
+	 */
+	public boolean matches(String str) {
+		Node node = root;
+		if (node.terminal) {
+			return true;
+		}
+		for (int i = 0; i < str.length(); i++) {
+			node = node.child(str.charAt(i));
+			if (node == null) {
+				return false;
+			}
+			if (node.terminal) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
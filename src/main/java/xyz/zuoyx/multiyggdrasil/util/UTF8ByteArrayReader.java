@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes UTF-8 from a byte array straight into the caller's buffer.
+ * <p>
+ * Unlike {@link java.io.InputStreamReader}, it doesn't allocate an 8 KiB buffer of its own, which matters when
+ * it's created for every small response. Malformed input is replaced with U+FFFD, like {@code new String(bytes, UTF_8)}.
+ */
+public class UTF8ByteArrayReader extends Reader {
+
+	private final ByteBuffer input;
+	private final CharsetDecoder decoder = UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private char pendingLowSurrogate; // 0 if none
+
+	public UTF8ByteArrayReader(byte[] bytes) {
+		this.input = ByteBuffer.wrap(bytes);
+	}
+
+	@Override
+	public int read(char[] buf, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int n = 0;
+		if (pendingLowSurrogate != 0) {
+			buf[off + n++] = pendingLowSurrogate;
+			pendingLowSurrogate = 0;
+		}
+		if (n < len && input.hasRemaining()) {
+			CharBuffer output = CharBuffer.wrap(buf, off + n, len - n);
+			decoder.decode(input, output, true);
+			n = output.position() - off;
+			if (n == 0 && input.hasRemaining()) {
+				// the next character is a surrogate pair, which doesn't fit into a single char
+				CharBuffer pair = CharBuffer.allocate(2);
+				decoder.decode(input, pair, true);
+				buf[off + n++] = pair.get(0);
+				pendingLowSurrogate = pair.get(1);
+			}
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.util;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Writes compact JSON as UTF-8 straight into a byte array, without building a tree or a string first.
+ * <p>
+ * The writer doesn't check the structure, the caller is expected to write well-formed JSON.
+ */
+public class UTF8JsonWriter {
+
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(ISO_8859_1);
+
+	private byte[] buf;
+	private int count;
+	private boolean separatorNeeded;
+
+	/**
+	 * @param expectedSize the expected length of the output, the buffer grows if it's exceeded
+	 */
+	public UTF8JsonWriter(int expectedSize) {
+		this.buf = new byte[Math.max(expectedSize, 16)];
+	}
+
+	public UTF8JsonWriter beginObject() {
+		beforeValue();
+		writeByte('{');
+		return this;
+	}
+
+	public UTF8JsonWriter endObject() {
+		writeByte('}');
+		separatorNeeded = true;
+		return this;
+	}
+
+	public UTF8JsonWriter beginArray() {
+		beforeValue();
+		writeByte('[');
+		return this;
+	}
+
+	public UTF8JsonWriter endArray() {
+		writeByte(']');
+		separatorNeeded = true;
+		return this;
+	}
+
+	public UTF8JsonWriter name(String name) {
+		beforeValue();
+		writeString(name);
+		writeByte(':');
+		return this;
+	}
+
+	public UTF8JsonWriter value(String value) {
+		beforeValue();
+		writeString(value);
+		separatorNeeded = true;
+		return this;
+	}
+
+	/**
+	 * Writes the UUID as a string of 32 hex digits without dashes, the form used by Yggdrasil.
+	 */
+	public UTF8JsonWriter value(UUID uuid) {
+		beforeValue();
+		ensureCapacity(34);
+		buf[count++] = '"';
+		UUIDUtils.writeUnsignedUUID(uuid, buf, count);
+		count += 32;
+		buf[count++] = '"';
+		separatorNeeded = true;
+		return this;
+	}
+
+	public byte[] toByteArray() {
+		return count == buf.length ? buf : Arrays.copyOf(buf, count);
+	}
+
+	private void beforeValue() {
+		if (separatorNeeded) {
+			writeByte(',');
+			separatorNeeded = false;
+		}
+	}
+
+	private void writeByte(char c) {
+		ensureCapacity(1);
+		buf[count++] = (byte) c;
+	}
+
+	private void writeString(String s) {
+		int length = s.length();
+		// enough for ASCII that needs no escaping, which is what most strings are
+		ensureCapacity(length + 2);
+		buf[count++] = '"';
+		for (int i = 0; i < length; i++) {
+			// copy the plain ASCII in a tight loop
+			byte[] dst = buf;
+			int n = count;
+			char c = 0;
+			for (; i < length; i++) {
+				c = s.charAt(i);
+				if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') {
+					break;
+				}
+				dst[n++] = (byte) c;
+			}
+			count = n;
+			if (i == length) {
+				break;
+			}
+
+			// at most 6 bytes for this char, and 1 for each of the remaining chars and the closing quote
+			ensureCapacity(6 + length - i);
+			if (c == '"' || c == '\\') {
+				buf[count++] = '\\';
+				buf[count++] = (byte) c;
+			} else if (c == '\n') {
+				buf[count++] = '\\';
+				buf[count++] = 'n';
+			} else if (c == '\r') {
+				buf[count++] = '\\';
+				buf[count++] = 'r';
+			} else if (c == '\t') {
+				buf[count++] = '\\';
+				buf[count++] = 't';
+			} else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+				// the line separators aren't valid in JavaScript strings, Gson escapes them as well
+				buf[count++] = '\\';
+				buf[count++] = 'u';
+				buf[count++] = HEX_DIGITS[c >>> 12];
+				buf[count++] = HEX_DIGITS[(c >>> 8) & 0xf];
+				buf[count++] = HEX_DIGITS[(c >>> 4) & 0xf];
+				buf[count++] = HEX_DIGITS[c & 0xf];
+			} else if (c < 0x800) {
+				buf[count++] = (byte) (0xc0 | (c >>> 6));
+				buf[count++] = (byte) (0x80 | (c & 0x3f));
+			} else if (!Character.isSurrogate(c)) {
+				buf[count++] = (byte) (0xe0 | (c >>> 12));
+				buf[count++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+				buf[count++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buf[count++] = (byte) (0xf0 | (codePoint >>> 18));
+				buf[count++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+				buf[count++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+				buf[count++] = (byte) (0x80 | (codePoint & 0x3f));
+			} else {
+				// unpaired surrogate, replaced like String.getBytes(UTF_8) does
+				buf[count++] = '?';
+			}
+		}
+		buf[count++] = '"';
+	}
+
+	private void ensureCapacity(int extra) {
+		if (count + extra > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+		}
+	}
+}
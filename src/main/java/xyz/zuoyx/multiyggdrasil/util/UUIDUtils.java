@@ -16,21 +16,64 @@
  */
 package xyz.zuoyx.multiyggdrasil.util;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import java.util.UUID;
 
 public final class UUIDUtils {
 
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(ISO_8859_1);
+
 	public static String toUnsignedUUID(UUID uuid) {
-		return uuid.toString().replace("-", "");
+		byte[] hex = new byte[32];
+		writeUnsignedUUID(uuid, hex, 0);
+		return new String(hex, ISO_8859_1);
+	}
+
+	/**
+	 * Writes the 32 lower-case hex digits of the UUID as ASCII.
+	 */
+	public static void writeUnsignedUUID(UUID uuid, byte[] dst, int offset) {
+		long mostSigBits = uuid.getMostSignificantBits();
+		long leastSigBits = uuid.getLeastSignificantBits();
+		for (int i = 15; i >= 0; i--) {
+			dst[offset + i] = HEX_DIGITS[(int) (mostSigBits & 0xf)];
+			dst[offset + 16 + i] = HEX_DIGITS[(int) (leastSigBits & 0xf)];
+			mostSigBits >>>= 4;
+			leastSigBits >>>= 4;
+		}
 	}
 
 	public static UUID fromUnsignedUUID(String uuid) {
 		if (uuid.length() == 32) {
-			return UUID.fromString(uuid.substring(0, 8) + "-" + uuid.substring(8, 12) + "-" + uuid.substring(12, 16) + "-" + uuid.substring(16, 20) + "-" + uuid.substring(20, 32));
+			long mostSigBits = 0;
+			long leastSigBits = 0;
+			boolean valid = true;
+			for (int i = 0; i < 16; i++) {
+				int high = hexDigit(uuid.charAt(i));
+				int low = hexDigit(uuid.charAt(i + 16));
+				valid &= (high | low) >= 0;
+				mostSigBits = (mostSigBits << 4) | high;
+				leastSigBits = (leastSigBits << 4) | low;
+			}
+			if (valid) {
+				return new UUID(mostSigBits, leastSigBits);
+			}
+		}
+		throw new IllegalArgumentException("Invalid UUID: " + uuid);
+	}
+
+	private static int hexDigit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		} else if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		} else if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
 		} else {
-			throw new IllegalArgumentException("Invalid UUID: " + uuid);
+			return -1;
 		}
 	}
+
 	private UUIDUtils() {
 	}
 }
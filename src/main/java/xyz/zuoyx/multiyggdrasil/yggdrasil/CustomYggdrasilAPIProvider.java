@@ -19,13 +19,16 @@ package xyz.zuoyx.multiyggdrasil.yggdrasil;
 import static xyz.zuoyx.multiyggdrasil.util.UUIDUtils.toUnsignedUUID;
 import java.util.UUID;
 import xyz.zuoyx.multiyggdrasil.APIMetadata;
+import xyz.zuoyx.multiyggdrasil.Config;
 
 public class CustomYggdrasilAPIProvider implements YggdrasilAPIProvider {
 
 	private String apiRoot;
+	private int maxUUIDsPerQuery;
 
 	public CustomYggdrasilAPIProvider(APIMetadata configuration) {
 		this.apiRoot = configuration.getApiRoot();
+		this.maxUUIDsPerQuery = Config.customUUIDQueryBatchSize;
 	}
 
 	@Override
@@ -33,6 +36,11 @@ public class CustomYggdrasilAPIProvider implements YggdrasilAPIProvider {
 		return apiRoot + "api/profiles/minecraft";
 	}
 
+	@Override
+	public int maxUUIDsPerQuery() {
+		return maxUUIDsPerQuery;
+	}
+
 	@Override
 	public String queryProfile(UUID uuid) {
 		return apiRoot + "sessionserver/session/minecraft/profile/" + toUnsignedUUID(uuid);
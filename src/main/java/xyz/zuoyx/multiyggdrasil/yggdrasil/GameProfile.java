@@ -16,6 +16,7 @@
  */
 package xyz.zuoyx.multiyggdrasil.yggdrasil;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,9 +25,27 @@ public class GameProfile {
 	public static class PropertyValue {
 		public String value;
 		public String signature;
+
+		public PropertyValue copy() {
+			PropertyValue copy = new PropertyValue();
+			copy.value = value;
+			copy.signature = signature;
+			return copy;
+		}
 	}
 
 	public UUID id;
 	public String name;
 	public Map<String, PropertyValue> properties;
+
+	public GameProfile copy() {
+		GameProfile copy = new GameProfile();
+		copy.id = id;
+		copy.name = name;
+		if (properties != null) {
+			copy.properties = new LinkedHashMap<>();
+			properties.forEach((key, property) -> copy.properties.put(key, property.copy()));
+		}
+		return copy;
+	}
 }
@@ -27,6 +27,12 @@ public class MojangYggdrasilAPIProvider implements YggdrasilAPIProvider {
 		return "https://api.mojang.com/profiles/minecraft";
 	}
 
+	@Override
+	public int maxUUIDsPerQuery() {
+		// larger batches are rejected
+		return 10;
+	}
+
 	@Override
 	public String queryProfile(UUID uuid) {
 		return "https://sessionserver.mojang.com/session/minecraft/profile/" + toUnsignedUUID(uuid);
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.yggdrasil;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import xyz.zuoyx.multiyggdrasil.Config;
+
+/**
+ * The threads that send requests to the authentication servers in parallel.
+ * <p>
+ * There are at most {@link Config#upstreamThreads} of them, and nothing is queued: when they're all busy,
+ * {@code submit()} throws {@link java.util.concurrent.RejectedExecutionException}, and the caller decides
+ * whether to do without the request or to send it itself.
+ */
+public final class UpstreamExecutor {
+
+	private UpstreamExecutor() {}
+
+	private static final AtomicInteger threadCounter = new AtomicInteger();
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Math.max(Config.upstreamThreads, 1), 60, TimeUnit.SECONDS,
+			new SynchronousQueue<>(), runnable -> {
+				Thread thread = new Thread(runnable, "MultiYggdrasil-upstream-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	public static ExecutorService get() {
+		return executor;
+	}
+}
@@ -22,4 +22,11 @@ public interface YggdrasilAPIProvider {
 	String queryUUIDsByNames();
 	String queryProfile(UUID uuid);
 	String hasJoinedServer(String username, String serverId, String ip);
+
+	/**
+	 * Returns the maximum number of names in one query of {@link #queryUUIDsByNames()}, or 0 if there's no limit.
+	 */
+	default int maxUUIDsPerQuery() {
+		return 0;
+	}
 }
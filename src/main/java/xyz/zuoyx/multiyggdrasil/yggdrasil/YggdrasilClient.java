@@ -20,31 +20,114 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singleton;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.CONTENT_TYPE_JSON;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.asString;
-import static xyz.zuoyx.multiyggdrasil.util.IOUtils.http;
 import static xyz.zuoyx.multiyggdrasil.util.IOUtils.newUncheckedIOException;
-import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.asJsonString;
-import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.parseJson;
+import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.newJsonReader;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.log;
 import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.DEBUG;
+import static xyz.zuoyx.multiyggdrasil.util.Logging.Level.WARNING;
 import static xyz.zuoyx.multiyggdrasil.util.UUIDUtils.fromUnsignedUUID;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UncheckedIOException;
 import java.net.Proxy;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import com.google.gson.stream.JsonReader;
+import xyz.zuoyx.multiyggdrasil.Config;
+import xyz.zuoyx.multiyggdrasil.util.ExpiringCache;
+import xyz.zuoyx.multiyggdrasil.util.HttpTransport;
 import xyz.zuoyx.multiyggdrasil.util.JsonUtils;
+import xyz.zuoyx.multiyggdrasil.util.SingleFlight;
 import xyz.zuoyx.multiyggdrasil.yggdrasil.GameProfile.PropertyValue;
 
 public class YggdrasilClient {
 
+	private static final class CachedName {
+		final String name;
+		final /* nullable */ UUID uuid; // null if the name doesn't exist
+
+		CachedName(String name, UUID uuid) {
+			this.name = name;
+			this.uuid = uuid;
+		}
+	}
+
+	private static final class CachedProfile {
+		final /* nullable */ GameProfile profile; // null if the profile doesn't exist
+		final long staleAt; // System.nanoTime()
+		volatile /* nullable */ byte[] response; // memoized by queryProfileResponse()
+
+		CachedProfile(GameProfile profile, long staleAt) {
+			this.profile = profile;
+			this.staleAt = staleAt;
+		}
+
+		// a rough estimate of the retained bytes, including the memoized response
+		long weight() {
+			long weight = 64;
+			if (profile != null) {
+				long textLength = profile.name.length();
+				weight += 96;
+				for (Map.Entry<String, PropertyValue> property : profile.properties.entrySet()) {
+					textLength += property.getKey().length() + property.getValue().value.length();
+					if (property.getValue().signature != null) {
+						textLength += property.getValue().signature.length();
+					}
+					weight += 160;
+				}
+				weight += 2 * textLength;
+			}
+			return weight;
+		}
+	}
+
+	private static final ThreadPoolExecutor profileRefresher = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), runnable -> {
+		Thread thread = new Thread(runnable, "MultiYggdrasil-profile-refresher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		profileRefresher.allowCoreThreadTimeOut(true);
+	}
+
 	private YggdrasilAPIProvider apiProvider;
-	private Proxy proxy;
+	private HttpTransport transport;
+	// lower-cased name -> UUID, names are case-insensitive
+	private final ExpiringCache<String, CachedName> uuidCache = new ExpiringCache<>(Config.uuidCacheSize);
+	// signed and unsigned profiles are cached separately
+	private final ExpiringCache<String, CachedProfile> profileCache = new ExpiringCache<>(Config.profileCacheSize, CachedProfile::weight);
+	private final Set<String> refreshingProfiles = ConcurrentHashMap.newKeySet();
+	// concurrent identical queries share one upstream request
+	private final SingleFlight<List<String>, Map<String, UUID>> uuidQueries = new SingleFlight<>();
+	private final SingleFlight<String, Optional<GameProfile>> profileQueries = new SingleFlight<>();
+	// names queried by queryUUID() within the batch window, in the order they were queried
+	private final Object pendingNamesLock = new Object();
+	private /* nullable */ Map<String, CompletableFuture<Optional<UUID>>> pendingNames; // guarded by pendingNamesLock
+	private final LongAdder batchedNames = new LongAdder();
 
 	public YggdrasilClient(YggdrasilAPIProvider apiProvider) {
 		this(apiProvider, null);
@@ -52,94 +135,454 @@ public class YggdrasilClient {
 
 	public YggdrasilClient(YggdrasilAPIProvider apiProvider, Proxy proxy) {
 		this.apiProvider = apiProvider;
-		this.proxy = proxy;
+		this.transport = HttpTransport.dedicated(proxy);
 	}
 
+	/**
+	 * Queries the UUIDs of the given names. The names that were queried recently are answered from the cache.
+	 *
+	 * @return the UUIDs keyed by the names in their correct case, in the order of the given names
+	 */
 	public Map<String, UUID> queryUUIDs(Set<String> names) throws UncheckedIOException {
-		String responseText;
+		Map<String, CachedName> resolved = new HashMap<>();
+		Set<String> misses = new LinkedHashSet<>();
+		for (String name : names) {
+			String key = name.toLowerCase(Locale.ROOT);
+			CachedName cached = uuidCache.get(key);
+			if (cached == null) {
+				misses.add(name);
+			} else {
+				resolved.put(key, cached);
+			}
+		}
+
+		if (!misses.isEmpty()) {
+			if (misses.size() < names.size()) {
+				log(DEBUG, "Query UUIDs at [" + apiProvider + "], " + (names.size() - misses.size()) + " of " + names.size() + " names are cached");
+			}
+			List<String> queryKey = new ArrayList<>();
+			misses.forEach(name -> queryKey.add(name.toLowerCase(Locale.ROOT)));
+			Collections.sort(queryKey);
+			uuidQueries.execute(queryKey, () -> fetchUUIDs(misses)).forEach((name, uuid) -> {
+				CachedName found = new CachedName(name, uuid);
+				resolved.put(name.toLowerCase(Locale.ROOT), found);
+				uuidCache.put(name.toLowerCase(Locale.ROOT), found, Config.uuidCacheTtl);
+			});
+			// a uuidCacheTtl of 0 disables the whole cache, so that a newly registered name is found at once
+			long negativeTtl = Config.uuidCacheTtl > 0 ? Config.uuidCacheNegativeTtl : 0;
+			for (String name : misses) {
+				String key = name.toLowerCase(Locale.ROOT);
+				if (!resolved.containsKey(key)) {
+					CachedName notFound = new CachedName(name, null);
+					resolved.put(key, notFound);
+					uuidCache.put(key, notFound, negativeTtl);
+				}
+			}
+		}
+
+		Map<String, UUID> result = new LinkedHashMap<>();
+		for (String name : names) {
+			CachedName entry = resolved.get(name.toLowerCase(Locale.ROOT));
+			if (entry.uuid != null) {
+				result.put(entry.name, entry.uuid);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the UUIDs of the names. If they're more than the server accepts in one query, they're split
+	 * into batches, which are sent in parallel, at most {@link Config#uuidQueryConcurrency} at a time.
+	 */
+	private Map<String, UUID> fetchUUIDs(Set<String> names) throws UncheckedIOException {
+		int batchSize = apiProvider.maxUUIDsPerQuery();
+		if (batchSize <= 0 || names.size() <= batchSize) {
+			return fetchUUIDBatch(names);
+		}
+
+		List<Set<String>> batches = new ArrayList<>();
+		for (String name : names) {
+			if (batches.isEmpty() || batches.get(batches.size() - 1).size() == batchSize) {
+				batches.add(new LinkedHashSet<>());
+			}
+			batches.get(batches.size() - 1).add(name);
+		}
+		log(DEBUG, "Query " + names.size() + " UUIDs at [" + apiProvider + "] in " + batches.size() + " batches");
+
+		AtomicReferenceArray<Map<String, UUID>> results = new AtomicReferenceArray<>(batches.size());
+		AtomicInteger nextBatch = new AtomicInteger();
+		Runnable worker = () -> {
+			int i;
+			while ((i = nextBatch.getAndIncrement()) < batches.size()) {
+				try {
+					results.set(i, fetchUUIDBatch(batches.get(i)));
+				} catch (RuntimeException e) {
+					// the whole query fails, don't start the remaining batches
+					nextBatch.set(batches.size());
+					throw e;
+				}
+			}
+		};
+
+		// the calling thread works on the batches too
+		int workers = Math.min(Math.max(Config.uuidQueryConcurrency, 1), batches.size());
+		List<Future<?>> futures = new ArrayList<>();
 		try {
-			responseText = asString(http("POST", apiProvider.queryUUIDsByNames(),
-					JsonUtils.toJsonString(names).getBytes(UTF_8), CONTENT_TYPE_JSON,
-					proxy));
+			try {
+				for (int i = 1; i < workers; i++) {
+					futures.add(UpstreamExecutor.get().submit(worker));
+				}
+			} catch (RejectedExecutionException e) {
+				// all the upstream threads are busy, fewer workers will do
+			}
+			worker.run();
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException runtimeException)
+						throw runtimeException;
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while querying UUIDs at [" + apiProvider + "]"));
+		} finally {
+			for (Future<?> future : futures) {
+				future.cancel(false);
+			}
+		}
+
+		Map<String, UUID> result = new LinkedHashMap<>();
+		for (int i = 0; i < batches.size(); i++) {
+			result.putAll(results.get(i));
+		}
+		return result;
+	}
+
+	private Map<String, UUID> fetchUUIDBatch(Set<String> names) throws UncheckedIOException {
+		byte[] response;
+		try {
+			response = transport.request("POST", apiProvider.queryUUIDsByNames(),
+					JsonUtils.toJsonString(names).getBytes(UTF_8), CONTENT_TYPE_JSON);
 		} catch (URISyntaxException e) {
 			throw new IllegalArgumentException("Invalid URL [" + apiProvider.queryUUIDsByNames() + "]");
 		} catch (IOException e) {
 			throw newUncheckedIOException("Failed to request URL [" + apiProvider.queryUUIDsByNames() + "]", e);
 		}
-		log(DEBUG, "Query UUIDs of " + names + " at [" + apiProvider + "], response: " + responseText);
+		if (Config.verboseLogging) {
+			log(DEBUG, "Query UUIDs of " + names + " at [" + apiProvider + "], response: " + asString(response));
+		}
 
-		Map<String, UUID> result = new LinkedHashMap<>();
-		for (JsonElement rawProfile : parseJson(responseText).getAsJsonArray()) {
-			JsonObject profile = rawProfile.getAsJsonObject();
-			result.put(
-					asJsonString(profile.get("name")),
-					parseUnsignedUUID(asJsonString(profile.get("id"))));
+		try (JsonReader reader = newJsonReader(response)) {
+			return parseUUIDs(reader);
+		} catch (IOException | IllegalStateException e) {
+			throw newUncheckedIOException("Malformed response from [" + apiProvider.queryUUIDsByNames() + "]", e);
 		}
-		return result;
 	}
 
 	public Optional<UUID> queryUUID(String name) throws UncheckedIOException {
-		return Optional.ofNullable(queryUUIDs(singleton(name)).get(name));
+		if (Config.uuidBatchWindow <= 0) {
+			return Optional.ofNullable(queryUUIDs(singleton(name)).get(name));
+		}
+		CachedName cached = uuidCache.get(name.toLowerCase(Locale.ROOT));
+		if (cached != null) {
+			// consistent with queryUUIDs(), whose result is keyed by the name in its correct case
+			return Optional.ofNullable(cached.name.equals(name) ? cached.uuid : null);
+		}
+		return queryUUIDBatched(name);
+	}
+
+	/**
+	 * Collects the names queried within {@link Config#uuidBatchWindow} into one query.
+	 * <p>
+	 * The caller that starts a batch waits out the window and sends the query,
+	 * unless the batch reaches the server's limit earlier, in which case the caller that fills it sends it.
+	 */
+	private Optional<UUID> queryUUIDBatched(String name) throws UncheckedIOException {
+		Map<String, CompletableFuture<Optional<UUID>>> batch;
+		CompletableFuture<Optional<UUID>> future;
+		boolean first;
+		boolean full;
+		synchronized (pendingNamesLock) {
+			first = pendingNames == null;
+			if (first) {
+				pendingNames = new LinkedHashMap<>();
+			}
+			batch = pendingNames;
+			future = batch.computeIfAbsent(name, key -> new CompletableFuture<>());
+			int limit = apiProvider.maxUUIDsPerQuery();
+			full = limit > 0 && batch.size() >= limit;
+			if (full) {
+				pendingNames = null;
+			}
+		}
+
+		if (full) {
+			sendBatch(batch);
+		} else if (first) {
+			boolean interrupted = false;
+			try {
+				Thread.sleep(Config.uuidBatchWindow);
+			} catch (InterruptedException e) {
+				// the others are waiting for the batch, send it anyway
+				interrupted = true;
+			}
+			boolean due;
+			synchronized (pendingNamesLock) {
+				due = pendingNames == batch;
+				if (due) {
+					pendingNames = null;
+				}
+			}
+			if (due) {
+				sendBatch(batch);
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException runtimeException)
+				throw runtimeException;
+			if (cause instanceof Error error)
+				throw error;
+			throw e;
+		}
 	}
 
+	private void sendBatch(Map<String, CompletableFuture<Optional<UUID>>> batch) {
+		if (batch.size() > 1) {
+			log(DEBUG, "Query " + batch.size() + " batched UUIDs at [" + apiProvider + "]");
+			batchedNames.add(batch.size() - 1);
+		}
+		Map<String, UUID> result;
+		try {
+			result = queryUUIDs(batch.keySet());
+		} catch (Throwable e) {
+			batch.values().forEach(future -> future.completeExceptionally(e));
+			return;
+		}
+		batch.forEach((name, future) -> future.complete(Optional.ofNullable(result.get(name))));
+	}
+
+	/**
+	 * Queries a profile, from the cache if possible.
+	 * <p>
+	 * Once a cached profile gets stale, it's still returned for a while, and refreshed in the background.
+	 * If the refresh fails, the stale profile is kept, so slow or failing servers don't hold up the callers.
+	 *
+	 * @return a copy of the profile, which the caller may modify
+	 */
 	public Optional<GameProfile> queryProfile(UUID uuid, boolean withSignature) throws UncheckedIOException {
+		return Optional.ofNullable(lookupProfile(uuid, withSignature).profile).map(GameProfile::copy);
+	}
+
+	/**
+	 * Queries a profile like {@link #queryProfile(UUID, boolean)}, and serializes it into a response.
+	 * <p>
+	 * The response is kept along with the cached profile, so a repeated query doesn't serialize it again.
+	 * Therefore, the serializer must give the same response whenever it's given the same profile.
+	 *
+	 * @param serializer called with a copy of the profile, which it may modify
+	 */
+	public Optional<byte[]> queryProfileResponse(UUID uuid, boolean withSignature, Function<GameProfile, byte[]> serializer) throws UncheckedIOException {
+		CachedProfile cached = lookupProfile(uuid, withSignature);
+		if (cached.profile == null) {
+			return Optional.empty();
+		}
+		byte[] response = cached.response;
+		if (response == null) {
+			// serializing it twice in a race does no harm
+			response = serializer.apply(cached.profile.copy());
+			cached.response = response;
+		}
+		return Optional.of(response);
+	}
+
+	private CachedProfile lookupProfile(UUID uuid, boolean withSignature) throws UncheckedIOException {
+		String key = (withSignature ? "signed:" : "unsigned:") + uuid;
+		CachedProfile cached = profileCache.get(key);
+		if (cached != null) {
+			if (System.nanoTime() - cached.staleAt >= 0) {
+				refreshProfile(key, uuid, withSignature);
+			}
+			return cached;
+		}
+		return cacheProfile(key, profileQueries.execute(key, () -> fetchProfile(uuid, withSignature)));
+	}
+
+	private CachedProfile cacheProfile(String key, Optional<GameProfile> profile) {
+		long staleAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.profileCacheTtl);
+		CachedProfile cached = new CachedProfile(profile.orElse(null), staleAt);
+		if (Config.profileCacheTtl > 0) {
+			profileCache.put(key, cached, (long) Config.profileCacheTtl + Config.profileCacheStaleTtl);
+		}
+		return cached;
+	}
+
+	private void refreshProfile(String key, UUID uuid, boolean withSignature) {
+		if (!refreshingProfiles.add(key)) {
+			return;
+		}
+		try {
+			profileRefresher.execute(() -> {
+				try {
+					cacheProfile(key, profileQueries.execute(key, () -> fetchProfile(uuid, withSignature)));
+				} catch (RuntimeException e) {
+					log(WARNING, "Failed to refresh profile [" + uuid + "] at [" + apiProvider + "], the stale one is kept", e);
+				} finally {
+					refreshingProfiles.remove(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// too many refreshes at the moment, the next query will retry
+			refreshingProfiles.remove(key);
+		}
+	}
+
+	private Optional<GameProfile> fetchProfile(UUID uuid, boolean withSignature) throws UncheckedIOException {
 		String url = apiProvider.queryProfile(uuid);
 		if (withSignature) {
 			url += "?unsigned=false";
 		}
-		String responseText;
+		byte[] response;
 		try {
-			responseText = asString(http("GET", url, proxy));
+			response = transport.request("GET", url, null, null);
 		} catch (URISyntaxException e) {
 			throw new IllegalArgumentException("Invalid URL [" + url + "]");
 		} catch (IOException e) {
 			throw newUncheckedIOException("Failed to request URL [" + url + "]", e);
 		}
-		if (responseText.isEmpty()) {
+		if (response.length == 0) {
 			log(DEBUG, "Query profile of [" + uuid + "] at [" + apiProvider + "], not found");
 			return Optional.empty();
 		}
-		log(DEBUG, "Query profile of [" + uuid + "] at [" + apiProvider + "], response: " + responseText);
+		if (Config.verboseLogging) {
+			log(DEBUG, "Query profile of [" + uuid + "] at [" + apiProvider + "], response: " + asString(response));
+		}
 
-		return Optional.of(parseGameProfile(parseJson(responseText).getAsJsonObject()));
+		return Optional.of(parseGameProfile(response, url));
 	}
 
 	public Optional<GameProfile> hasJoinedServer(String username, String serverId, String ip) throws UncheckedIOException {
-		String responseText;
+		byte[] response;
 		try {
-			responseText = asString(http("GET", apiProvider.hasJoinedServer(username, serverId, ip) , proxy));
+			response = transport.request("GET", apiProvider.hasJoinedServer(username, serverId, ip), null, null);
 		} catch (URISyntaxException e) {
 			throw new IllegalArgumentException("Invalid URL [" + apiProvider.hasJoinedServer(username, serverId, ip) + "]");
 		} catch (IOException e) {
 			throw newUncheckedIOException("Failed to request URL [" + apiProvider.hasJoinedServer(username, serverId, ip) + "]", e);
 		}
-		if (responseText.isEmpty()) {
+		if (response.length == 0) {
 			log(DEBUG, "Username [" + username + "] is not authenticated at [" + apiProvider + "] Yggdrasil server");
 			return Optional.empty();
 		}
-		log(DEBUG, "Username [" + username + "] has been authenticated at [" + apiProvider + "] Yggdrasil server, response: " + responseText);
+		if (Config.verboseLogging) {
+			log(DEBUG, "Username [" + username + "] has been authenticated at [" + apiProvider + "] Yggdrasil server, response: " + asString(response));
+		}
 
-		return Optional.of(parseGameProfile(parseJson(responseText).getAsJsonObject()));
+		return Optional.of(parseGameProfile(response, apiProvider.hasJoinedServer(username, serverId, ip)));
 	}
 
 	public YggdrasilAPIProvider getApiProvider() {
 		return apiProvider;
 	}
 
-	private GameProfile parseGameProfile(JsonObject json) {
+	public ExpiringCache<String, ?> getUUIDCache() {
+		return uuidCache;
+	}
+
+	public ExpiringCache<String, ?> getProfileCache() {
+		return profileCache;
+	}
+
+	/**
+	 * Returns the number of queries that were answered by an identical query in flight,
+	 * or by a batch of single-name queries.
+	 */
+	public long getCoalescedQueries() {
+		return uuidQueries.getCoalescedCount() + profileQueries.getCoalescedCount() + batchedNames.sum();
+	}
+
+	private GameProfile parseGameProfile(byte[] response, String url) throws UncheckedIOException {
+		try (JsonReader reader = newJsonReader(response)) {
+			return parseGameProfile(reader);
+		} catch (IOException | IllegalStateException e) {
+			throw newUncheckedIOException("Malformed response from [" + url + "]", e);
+		}
+	}
+
+	// The responses are read token by token, without building a tree of them.
+
+	private Map<String, UUID> parseUUIDs(JsonReader reader) throws IOException {
+		Map<String, UUID> result = new LinkedHashMap<>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String name = null;
+			String id = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "name" -> name = reader.nextString();
+					case "id" -> id = reader.nextString();
+					default -> reader.skipValue();
+				}
+			}
+			reader.endObject();
+			if (name == null || id == null) {
+				throw new IOException("Incomplete profile");
+			}
+			result.put(name, parseUnsignedUUID(id));
+		}
+		reader.endArray();
+		return result;
+	}
+
+	private GameProfile parseGameProfile(JsonReader reader) throws IOException {
 		GameProfile profile = new GameProfile();
-		profile.id = parseUnsignedUUID(asJsonString(json.get("id")));
-		profile.name = asJsonString(json.get("name"));
 		profile.properties = new LinkedHashMap<>();
-		for (JsonElement rawProperty : json.get("properties").getAsJsonArray()) {
-			JsonObject property = rawProperty.getAsJsonObject();
-			PropertyValue entry = new PropertyValue();
-			entry.value = asJsonString(property.get("value"));
-			if (property.has("signature")) {
-				entry.signature = asJsonString(property.get("signature"));
+		String id = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "id" -> id = reader.nextString();
+				case "name" -> profile.name = reader.nextString();
+				case "properties" -> {
+					reader.beginArray();
+					while (reader.hasNext()) {
+						String name = null;
+						PropertyValue entry = new PropertyValue();
+						reader.beginObject();
+						while (reader.hasNext()) {
+							switch (reader.nextName()) {
+								case "name" -> name = reader.nextString();
+								case "value" -> entry.value = reader.nextString();
+								case "signature" -> entry.signature = reader.nextString();
+								default -> reader.skipValue();
+							}
+						}
+						reader.endObject();
+						if (name == null || entry.value == null) {
+							throw new IOException("Incomplete property");
+						}
+						profile.properties.put(name, entry);
+					}
+					reader.endArray();
+				}
+				default -> reader.skipValue();
 			}
-			profile.properties.put(asJsonString(property.get("name")), entry);
 		}
+		reader.endObject();
+		if (id == null || profile.name == null) {
+			throw new IOException("Incomplete profile");
+		}
+		profile.id = parseUnsignedUUID(id);
 		return profile;
 	}
 
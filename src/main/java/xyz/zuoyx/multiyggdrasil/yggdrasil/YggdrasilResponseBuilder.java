@@ -16,67 +16,61 @@
  */
 package xyz.zuoyx.multiyggdrasil.yggdrasil;
 
-import static xyz.zuoyx.multiyggdrasil.util.JsonUtils.toJsonString;
-import static xyz.zuoyx.multiyggdrasil.util.UUIDUtils.toUnsignedUUID;
-
 import java.util.Map;
 import java.util.UUID;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import xyz.zuoyx.multiyggdrasil.util.UTF8JsonWriter;
 
+/**
+ * Builds the responses as UTF-8 JSON.
+ */
 public final class YggdrasilResponseBuilder {
 	private YggdrasilResponseBuilder() {
 	}
 
-	public static String queryUUIDs(Map<String, UUID> result) {
-		JsonArray response = new JsonArray();
-		result.forEach((name, uuid) -> {
-			JsonObject entry = new JsonObject();
-			entry.addProperty("id", toUnsignedUUID(uuid));
-			entry.addProperty("name", name);
-			response.add(entry);
-		});
-		return toJsonString(response);
+	public static byte[] queryUUIDs(Map<String, UUID> result) {
+		UTF8JsonWriter response = new UTF8JsonWriter(2 + result.size() * 64);
+		response.beginArray();
+		result.forEach((name, uuid) -> response.beginObject()
+				.name("id").value(uuid)
+				.name("name").value(name)
+				.endObject());
+		response.endArray();
+		return response.toByteArray();
 	}
 
-	public static String queryProfile(GameProfile profile, boolean withSignature) {
-		JsonObject response = new JsonObject();
-		response.addProperty("id", toUnsignedUUID(profile.id));
-		response.addProperty("name", profile.name);
-
-		JsonArray properties = new JsonArray();
-		profile.properties.forEach((name, value) -> {
-			JsonObject entry = new JsonObject();
-			entry.addProperty("name", name);
-			entry.addProperty("value", value.value);
-			if (withSignature && value.signature != null) {
-				entry.addProperty("signature", value.signature);
-			}
-			properties.add(entry);
-		});
-		response.add("properties", properties);
+	public static byte[] queryProfile(GameProfile profile, boolean withSignature) {
+		return writeProfile(profile, withSignature);
+	}
 
-		return toJsonString(response);
+	public static byte[] hasJoinedServer(GameProfile profile) {
+		return writeProfile(profile, true);
 	}
 
-	public static String hasJoinedServer(GameProfile profile) {
-		JsonObject response = new JsonObject();
-		response.addProperty("id", toUnsignedUUID(profile.id));
-		response.addProperty("name", profile.name);
+	private static byte[] writeProfile(GameProfile profile, boolean withSignature) {
+		int expectedSize = 96 + profile.name.length();
+		for (Map.Entry<String, GameProfile.PropertyValue> property : profile.properties.entrySet()) {
+			expectedSize += 48 + property.getKey().length() + property.getValue().value.length();
+			if (withSignature && property.getValue().signature != null) {
+				expectedSize += 16 + property.getValue().signature.length();
+			}
+		}
 
-		JsonArray properties = new JsonArray();
+		UTF8JsonWriter response = new UTF8JsonWriter(expectedSize);
+		response.beginObject()
+				.name("id").value(profile.id)
+				.name("name").value(profile.name)
+				.name("properties").beginArray();
 		profile.properties.forEach((name, value) -> {
-			JsonObject entry = new JsonObject();
-			entry.addProperty("name", name);
-			entry.addProperty("value", value.value);
-			if (value.signature != null) {
-				entry.addProperty("signature", value.signature);
+			response.beginObject()
+					.name("name").value(name)
+					.name("value").value(value.value);
+			if (withSignature && value.signature != null) {
+				response.name("signature").value(value.signature);
 			}
-			properties.add(entry);
+			response.endObject();
 		});
-		response.add("properties", properties);
-
-		return toJsonString(response);
+		response.endArray().endObject();
+		return response.toByteArray();
 	}
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.Config;
+import xyz.zuoyx.multiyggdrasil.httpd.ConcurrentUUIDQuery;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.UpstreamExecutor;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilAPIProvider;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
+
+public class ConcurrentUUIDQueryTest {
+
+	private static class FakeClient extends YggdrasilClient {
+
+		private final long delay;
+		private final List<Thread> callers = new ArrayList<>();
+
+		FakeClient(long delay) {
+			super(new YggdrasilAPIProvider() {
+				@Override
+				public String queryUUIDsByNames() {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public String queryProfile(UUID uuid) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public String hasJoinedServer(String username, String serverId, String ip) {
+					throw new UnsupportedOperationException();
+				}
+			});
+			this.delay = delay;
+		}
+
+		@Override
+		public Map<String, UUID> queryUUIDs(Set<String> names) {
+			synchronized (callers) {
+				callers.add(Thread.currentThread());
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			Map<String, UUID> result = new LinkedHashMap<>();
+			for (String name : names) {
+				result.put(name, UUID.nameUUIDFromBytes(name.getBytes()));
+			}
+			return result;
+		}
+
+		boolean calledBy(Thread thread) {
+			synchronized (callers) {
+				return callers.contains(thread);
+			}
+		}
+	}
+
+	private static Map<String, UUID> query(FakeClient first, FakeClient second) throws InterruptedIOException {
+		ConcurrentUUIDQuery query = new ConcurrentUUIDQuery();
+		ConcurrentUUIDQuery.Batch firstNames = query.batch(first, Map::put);
+		ConcurrentUUIDQuery.Batch secondNames = query.batch(second, Map::put);
+		firstNames.add("slow");
+		secondNames.add("fast");
+		return query.execute();
+	}
+
+	@Test
+	public void testDeadline() throws InterruptedIOException {
+		// Config isn't initialized here, so the pool would have a single thread
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) UpstreamExecutor.get();
+		pool.setMaximumPoolSize(Math.max(pool.getMaximumPoolSize(), 2));
+		int deadline = Config.uuidQueryDeadline;
+		Config.uuidQueryDeadline = 300;
+		try {
+			long start = System.nanoTime();
+			Map<String, UUID> result = query(new FakeClient(3000), new FakeClient(0));
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertEquals(Set.of("fast"), result.keySet());
+			assertTrue(elapsed < 2000);
+		} finally {
+			Config.uuidQueryDeadline = deadline;
+		}
+	}
+
+	@Test
+	public void testDeadlineWithBusyPool() throws InterruptedIOException {
+		int deadline = Config.uuidQueryDeadline;
+		Config.uuidQueryDeadline = 300;
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			// occupy all the upstream threads
+			try {
+				for (;;) {
+					UpstreamExecutor.get().submit(() -> {
+						release.await();
+						return null;
+					});
+				}
+			} catch (RejectedExecutionException e) {
+				// full
+			}
+
+			FakeClient slow = new FakeClient(3000);
+			FakeClient fast = new FakeClient(0);
+			long start = System.nanoTime();
+			Map<String, UUID> result = query(slow, fast);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			// the batches that can't get a thread are left out, rather than run without a deadline here
+			assertEquals(Set.of(), result.keySet());
+			assertFalse(slow.calledBy(Thread.currentThread()));
+			assertFalse(fast.calledBy(Thread.currentThread()));
+			assertTrue(elapsed < 2000);
+		} finally {
+			release.countDown();
+			Config.uuidQueryDeadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.ConcurrentWeakIdentitySet;
+
+public class ConcurrentWeakIdentitySetTest {
+
+	@Test
+	public void testIdentity() {
+		ConcurrentWeakIdentitySet<String> set = new ConcurrentWeakIdentitySet<>();
+		String a = new String("key");
+		String b = new String("key");
+
+		assertTrue(set.add(a));
+		assertFalse(set.add(a));
+		assertTrue(set.contains(a));
+		assertFalse(set.contains(b));
+
+		assertTrue(set.add(b));
+		assertEquals(2, set.size());
+	}
+
+	@Test
+	public void testRemove() {
+		ConcurrentWeakIdentitySet<Object> set = new ConcurrentWeakIdentitySet<>();
+		Object a = new Object();
+
+		assertFalse(set.remove(a));
+		set.add(a);
+		assertTrue(set.remove(a));
+		assertFalse(set.contains(a));
+		assertEquals(0, set.size());
+	}
+
+	@Test
+	public void testNull() {
+		ConcurrentWeakIdentitySet<Object> set = new ConcurrentWeakIdentitySet<>();
+		assertFalse(set.contains(null));
+		assertFalse(set.remove(null));
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.V1_8;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import xyz.zuoyx.multiyggdrasil.transform.ConstantPoolScanner;
+
+public class ConstantPoolScannerTest {
+
+	static byte[] classWithConstants(Object... constants) {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_8, ACC_PUBLIC, "test/Constants", null, "java/lang/Object", null);
+		for (Object constant : constants) {
+			cw.newConst(constant);
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	@Test
+	public void testOverlappingPatterns() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "he", "she", "his", "hers" });
+		assertEquals(0b1011, scanner.scan(classWithConstants("ushers")));
+		assertEquals(0b0100, scanner.scan(classWithConstants("this")));
+		assertEquals(0, scanner.scan(classWithConstants("h", "s", "e")));
+
+		scanner = new ConstantPoolScanner(new String[] { "abc", "bc", "c", "abcd" });
+		assertEquals(0b0111, scanner.scan(classWithConstants("xabcx")));
+		assertEquals(0b1111, scanner.scan(classWithConstants("abcd")));
+		assertEquals(0b0110, scanner.scan(classWithConstants("aabbc")));
+	}
+
+	@Test
+	public void testMatchAcrossConstants() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "cd" });
+		assertEquals(0, scanner.scan(classWithConstants("abc", "def")));
+		assertEquals(1, scanner.scan(classWithConstants("abc", "cde")));
+	}
+
+	@Test
+	public void testOnlyStringConstants() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "needle" });
+		// class names, member names and descriptors are CONSTANT_Utf8 entries that aren't string constants
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_8, ACC_PUBLIC, "test/needle", null, "java/lang/Object", null);
+		cw.newUTF8("needle");
+		cw.visitField(ACC_PUBLIC, "needle", "I", null, null).visitEnd();
+		cw.visitEnd();
+		assertEquals(0, scanner.scan(cw.toByteArray()));
+	}
+
+	@Test
+	public void testWideConstants() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "needle", "pin" });
+		assertEquals(0b01, scanner.scan(classWithConstants(1L, 2.0, "needle", 3L)));
+		assertEquals(0b11, scanner.scan(classWithConstants(Long.MAX_VALUE, "needle", Double.NaN, 4.0f, 5, "pin")));
+	}
+
+	@Test
+	public void testModifiedUTF8() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "\u540d\u5b57", "a\0b", "\ud83d\ude00" });
+		assertEquals(0b001, scanner.scan(classWithConstants("x\u540d\u5b57")));
+		assertEquals(0b010, scanner.scan(classWithConstants("a\0b")));
+		assertEquals(0b100, scanner.scan(classWithConstants("\ud83d\ude00!")));
+		assertEquals(0, scanner.scan(classWithConstants("ab", "\u540d")));
+	}
+
+	@Test
+	public void testMalformed() {
+		ConstantPoolScanner scanner = new ConstantPoolScanner(new String[] { "needle", "pin" });
+		long all = 0b11;
+		byte[] classfile = classWithConstants(1L, "needle", 2.0, "other");
+		long expected = scanner.scan(classfile);
+		assertEquals(0b01, expected);
+
+		// a class that can't be read must never lose a match, so it matches all the patterns
+		for (int length = 0; length < classfile.length; length++) {
+			long matched = scanner.scan(Arrays.copyOf(classfile, length));
+			assertEquals(expected, matched & expected);
+		}
+		assertEquals(all, scanner.scan(new byte[0]));
+		assertEquals(all, scanner.scan(Arrays.copyOf(classfile, 20)));
+
+		byte[] badMagic = classfile.clone();
+		badMagic[0] = 0;
+		assertEquals(all, scanner.scan(badMagic));
+
+		byte[] badTag = classfile.clone();
+		badTag[10] = 2; // no such tag
+		assertEquals(all, scanner.scan(badTag));
+
+		byte[] badCount = classfile.clone();
+		badCount[8] = (byte) 0xff; // more entries than there are
+		assertEquals(all, scanner.scan(badCount));
+	}
+
+	@Test
+	public void testNoPatterns() {
+		assertEquals(0, new ConstantPoolScanner(new String[0]).scan(new byte[0]));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.ExpiringCache;
+
+public class ExpiringCacheTest {
+
+	private final AtomicLong now = new AtomicLong();
+
+	private void advance(long millis) {
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	@Test
+	public void testExpiry() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(16, now::get);
+		cache.put("a", "1", 1000);
+		cache.put("b", "2", 100);
+		advance(99);
+		assertEquals("1", cache.get("a"));
+		assertEquals("2", cache.get("b"));
+		advance(1);
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		advance(1000);
+		assertNull(cache.get("a"));
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(2, now::get);
+		cache.put("a", "1", 1000);
+		cache.put("b", "2", 1000);
+		cache.get("a");
+		cache.put("c", "3", 1000);
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("3", cache.get("c"));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testExpiredEntriesAreDroppedFirst() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(2, now::get);
+		cache.put("a", "1", 1000);
+		cache.put("b", "2", 10);
+		advance(10);
+		cache.put("c", "3", 1000);
+		assertEquals("1", cache.get("a"));
+		assertEquals("3", cache.get("c"));
+		assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	public void testExpiryScanIsBounded() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(20, now::get);
+		for (int i = 0; i < 20; i++) {
+			cache.put("k" + i, "v", i == 15 ? 10 : 1000);
+		}
+		advance(10);
+		// the expired entry is too recently used to be checked, so the least recently used one is evicted
+		cache.put("new", "v", 1000);
+		assertNull(cache.get("k0"));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(20, cache.size());
+
+		// once it's among the least recently used entries, it's dropped instead
+		for (int i = 1; i < 12; i++) {
+			cache.get("k" + i);
+		}
+		cache.put("newer", "v", 1000);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(20, cache.size());
+	}
+
+	@Test
+	public void testWeight() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, String::length, now::get);
+		cache.put("a", "aaaa", 1000);
+		cache.put("b", "bbbb", 1000);
+		cache.put("c", "ccccccccccc", 1000);
+		assertEquals(8, cache.getWeight());
+		cache.put("c", "cccc", 1000);
+		assertNull(cache.get("a"));
+		assertEquals(8, cache.getWeight());
+		cache.put("b", "b", 1000);
+		assertEquals(5, cache.getWeight());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testDisabled() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(0, now::get);
+		cache.put("a", "1", 1000);
+		assertNull(cache.get("a"));
+		ExpiringCache<String, String> noTtl = new ExpiringCache<>(16, now::get);
+		noTtl.put("a", "1", 0);
+		assertNull(noTtl.get("a"));
+	}
+}
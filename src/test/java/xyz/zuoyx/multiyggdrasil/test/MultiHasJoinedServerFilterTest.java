@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.httpd.MultiHasJoinedServerFilter;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.GameProfile;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilAPIProvider;
+import xyz.zuoyx.multiyggdrasil.yggdrasil.YggdrasilClient;
+
+public class MultiHasJoinedServerFilterTest {
+
+	private interface Answer {
+		Optional<GameProfile> get() throws InterruptedException;
+	}
+
+	private static class FakeClient extends YggdrasilClient {
+
+		private final Answer answer;
+
+		FakeClient(String name, Answer answer) {
+			super(new YggdrasilAPIProvider() {
+				@Override
+				public String queryUUIDsByNames() {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public String queryProfile(UUID uuid) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public String hasJoinedServer(String username, String serverId, String ip) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public String toString() {
+					return name;
+				}
+			});
+			this.answer = answer;
+		}
+
+		@Override
+		public Optional<GameProfile> hasJoinedServer(String username, String serverId, String ip) {
+			try {
+				return answer.get();
+			} catch (InterruptedException e) {
+				throw new UncheckedIOException(new InterruptedIOException());
+			}
+		}
+	}
+
+	private static Answer profile(String name) {
+		return () -> {
+			GameProfile profile = new GameProfile();
+			profile.id = UUID.nameUUIDFromBytes(name.getBytes());
+			profile.name = name;
+			return Optional.of(profile);
+		};
+	}
+
+	private static Answer notFound() {
+		return Optional::empty;
+	}
+
+	private static Answer failure() {
+		return () -> {
+			throw new UncheckedIOException(new IOException("unreachable"));
+		};
+	}
+
+	private static Answer after(CountDownLatch latch, Answer answer) {
+		return () -> {
+			latch.await();
+			return answer.get();
+		};
+	}
+
+	private static Optional<String> verify(boolean concurrent, Answer... answers) throws InterruptedIOException {
+		YggdrasilClient[] clients = new YggdrasilClient[answers.length];
+		for (int i = 0; i < answers.length; i++) {
+			clients[i] = new FakeClient("server" + i, answers[i]);
+		}
+		return new MultiHasJoinedServerFilter(clients, null, concurrent)
+				.verify("player", "serverId", null)
+				.map(profile -> profile.name);
+	}
+
+	@Test
+	public void testPriority() throws InterruptedIOException {
+		for (boolean concurrent : new boolean[] { false, true }) {
+			assertEquals(Optional.of("a"), verify(concurrent, profile("a"), profile("b")));
+			assertEquals(Optional.of("b"), verify(concurrent, notFound(), profile("b"), profile("c")));
+			assertEquals(Optional.empty(), verify(concurrent, notFound(), notFound()));
+		}
+	}
+
+	@Test
+	public void testFailuresFallThrough() throws InterruptedIOException {
+		for (boolean concurrent : new boolean[] { false, true }) {
+			assertEquals(Optional.of("b"), verify(concurrent, failure(), profile("b")));
+			assertEquals(Optional.of("c"), verify(concurrent, failure(), notFound(), profile("c")));
+			assertEquals(Optional.empty(), verify(concurrent, failure(), failure()));
+		}
+	}
+
+	@Test
+	public void testLowerPriorityWaitsForHigher() throws InterruptedException, ExecutionException, TimeoutException {
+		Answer[] firstAnswers = { profile("a"), notFound(), failure() };
+		String[] expected = { "a", "b", "b" };
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			for (int i = 0; i < firstAnswers.length; i++) {
+				// the servers of lower priority answer at once, the first one only when released
+				CountDownLatch release = new CountDownLatch(1);
+				Answer first = after(release, firstAnswers[i]);
+				Future<Optional<String>> result = pool.submit(() -> verify(true, first, profile("b"), profile("c")));
+				Thread.sleep(200);
+				assertFalse(result.isDone());
+				release.countDown();
+				assertEquals(Optional.of(expected[i]), result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLowerPriorityNotHeldUpByHigher() throws InterruptedIOException {
+		// the first server answers only once the second one has been asked
+		CountDownLatch asked = new CountDownLatch(1);
+		Answer first = () -> asked.await(5, TimeUnit.SECONDS) ? Optional.empty() : profile("a").get();
+		Answer second = () -> {
+			asked.countDown();
+			return profile("b").get();
+		};
+		assertEquals(Optional.of("b"), verify(true, first, second));
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import com.sun.net.httpserver.HttpExchange;
+import xyz.zuoyx.multiyggdrasil.httpd.NioHttpServer;
+
+public class NioHttpServerTest {
+
+	private static final NioHttpServer server;
+
+	static {
+		// read once when the server class is initialized, in seconds
+		System.setProperty("sun.net.httpserver.idleInterval", "1");
+		ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			server = NioHttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), executor, NioHttpServerTest::handle);
+		} catch (IOException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+		server.start();
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		byte[] body = switch (path) {
+			case "/echo" -> exchange.getRequestBody().readAllBytes();
+			case "/headers" -> String.join(",", exchange.getRequestHeaders().get("X-Test")).getBytes(UTF_8);
+			default -> path.getBytes(UTF_8);
+		};
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static final class Response {
+		int status;
+		final Map<String, String> headers = new TreeMap<>();
+		String body;
+	}
+
+	private static final class Client implements AutoCloseable {
+
+		private final Socket socket;
+		private final InputStream in;
+		private final OutputStream out;
+
+		Client() throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort());
+			socket.setSoTimeout(5000);
+			in = new BufferedInputStream(socket.getInputStream());
+			out = socket.getOutputStream();
+		}
+
+		void send(String data) throws IOException {
+			out.write(data.getBytes(ISO_8859_1));
+			out.flush();
+		}
+
+		String readLine() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			for (;;) {
+				int c = in.read();
+				if (c == -1)
+					throw new EOFException();
+				if (c == '\n' && sb.length() > 0 && sb.charAt(sb.length() - 1) == '\r') {
+					sb.setLength(sb.length() - 1);
+					return sb.toString();
+				}
+				sb.append((char) c);
+			}
+		}
+
+		Response read() throws IOException {
+			Response response = new Response();
+			response.status = Integer.parseInt(readLine().split(" ")[1]);
+			for (String line; !(line = readLine()).isEmpty();) {
+				int colon = line.indexOf(':');
+				response.headers.put(line.substring(0, colon).toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+			}
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			if ("chunked".equalsIgnoreCase(response.headers.get("transfer-encoding"))) {
+				for (int size; (size = Integer.parseInt(readLine(), 16)) != 0;) {
+					body.write(in.readNBytes(size));
+					readLine();
+				}
+				readLine();
+			} else if (response.headers.containsKey("content-length")) {
+				body.write(in.readNBytes(Integer.parseInt(response.headers.get("content-length"))));
+			}
+			response.body = body.toString(UTF_8);
+			return response;
+		}
+
+		boolean isClosedByServer() throws IOException {
+			try {
+				return in.read() == -1;
+			} catch (SocketTimeoutException e) {
+				return false;
+			} catch (IOException e) {
+				// reset
+				return true;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testPipelining() throws IOException {
+		try (Client client = new Client()) {
+			client.send("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+					+ "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello"
+					+ "GET /third HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			assertEquals("/first", client.read().body);
+			assertEquals("hello", client.read().body);
+			assertEquals("/third", client.read().body);
+
+			// the connection is kept alive
+			client.send("GET /fourth HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			assertEquals("/fourth", client.read().body);
+		}
+	}
+
+	@Test
+	public void testChunkedBody() throws IOException {
+		try (Client client = new Client()) {
+			client.send("POST /echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+					+ "5\r\nhello\r\n6;ext=1\r\n world\r\n0\r\nTrailer: x\r\n\r\n"
+					+ "GET /next HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			Response response = client.read();
+			assertEquals(200, response.status);
+			assertEquals("hello world", response.body);
+			assertEquals("/next", client.read().body);
+		}
+	}
+
+	@Test
+	public void testHeaders() throws IOException {
+		try (Client client = new Client()) {
+			client.send("GET /headers HTTP/1.1\r\nHost: localhost\r\nX-Test:  a  \r\nx-test: b\r\n\r\n"
+					+ "POST /echo HTTP/1.1\r\ncontent-LENGTH: 3\r\n\r\nabc");
+			assertEquals("a,b", client.read().body);
+			assertEquals("abc", client.read().body);
+		}
+	}
+
+	@Test
+	public void testExpectContinue() throws IOException {
+		try (Client client = new Client()) {
+			client.send("POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\nExpect: 100-continue\r\n\r\n");
+			assertEquals("HTTP/1.1 100 Continue", client.readLine());
+			assertEquals("", client.readLine());
+			client.send("abc");
+			assertEquals("abc", client.read().body);
+
+			// the handler doesn't read the body, so the client never sends it, and the connection can't be reused
+			client.send("POST /ignored HTTP/1.1\r\nHost: localhost\r\nContent-Length: 3\r\nExpect: 100-continue\r\n\r\n");
+			Response response = client.read();
+			assertEquals(200, response.status);
+			assertEquals("/ignored", response.body);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testHeadTooLarge() throws IOException {
+		try (Client client = new Client()) {
+			client.send("GET / HTTP/1.1\r\nHost: localhost\r\nX-Large: " + "x".repeat(20 * 1024) + "\r\n\r\n");
+			assertEquals(431, client.read().status);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testMalformedRequestLine() throws IOException {
+		try (Client client = new Client()) {
+			client.send("NOT-HTTP\r\n\r\n");
+			assertEquals(400, client.read().status);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testInvalidContentLength() throws IOException {
+		try (Client client = new Client()) {
+			client.send("POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 12x\r\n\r\n");
+			assertEquals(200, client.read().status);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testUnreadBodyIsDrained() throws IOException {
+		try (Client client = new Client()) {
+			String body = "x".repeat(1000);
+			client.send("POST /ignored HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length() + "\r\n\r\n" + body
+					+ "GET /next HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			assertEquals("/ignored", client.read().body);
+			assertEquals("/next", client.read().body);
+		}
+	}
+
+	@Test
+	public void testLargeUnreadBodyClosesConnection() throws IOException {
+		try (Client client = new Client()) {
+			client.send("POST /ignored HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000000\r\n\r\n");
+			assertEquals("/ignored", client.read().body);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testConnectionClose() throws IOException {
+		try (Client client = new Client()) {
+			client.send("GET /a HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+			Response response = client.read();
+			assertEquals("/a", response.body);
+			assertEquals("close", response.headers.get("connection"));
+			assertTrue(client.isClosedByServer());
+		}
+		try (Client client = new Client()) {
+			client.send("GET /b HTTP/1.0\r\n\r\n");
+			assertEquals("/b", client.read().body);
+			assertTrue(client.isClosedByServer());
+		}
+	}
+
+	@Test
+	public void testIdleConnectionsAreClosed() throws IOException, InterruptedException {
+		try (Client idle = new Client(); Client partial = new Client(); Client active = new Client()) {
+			active.send("GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			assertEquals("/a", active.read().body);
+			partial.send("GET /b HTTP/1.1\r\nHost: local");
+
+			// the idle timeout is 1 s, checked every second
+			Thread.sleep(2500);
+			assertTrue(idle.isClosedByServer());
+			assertTrue(partial.isClosedByServer());
+			assertTrue(active.isClosedByServer());
+		}
+		try (Client client = new Client()) {
+			client.send("GET /c HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			Response response = client.read();
+			assertEquals("/c", response.body);
+			assertNull(response.headers.get("connection"));
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.PrefixTrie;
+
+public class PrefixTrieTest {
+
+	@Test
+	public void testMatches() {
+		PrefixTrie trie = new PrefixTrie(List.of("java.", "javax.", "com.sun.", "sun."));
+		assertTrue(trie.matches("java.lang.String"));
+		assertTrue(trie.matches("javax.crypto.Cipher"));
+		assertTrue(trie.matches("com.sun.net.httpserver.HttpServer"));
+		assertTrue(trie.matches("sun."));
+		assertFalse(trie.matches("jdk.internal.misc.Unsafe"));
+		assertFalse(trie.matches("com.mojang.authlib.GameProfile"));
+		assertFalse(trie.matches("java"));
+		assertFalse(trie.matches("sunset.Sky"));
+		assertFalse(trie.matches(""));
+	}
+
+	@Test
+	public void testNestedPrefixes() {
+		PrefixTrie trie = new PrefixTrie(List.of("com.example.internal.", "com."));
+		assertTrue(trie.matches("com.example.Foo"));
+		assertTrue(trie.matches("com.example.internal.Bar"));
+		assertFalse(trie.matches("org.example.Foo"));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertFalse(new PrefixTrie(emptyList()).matches("java.lang.String"));
+		assertTrue(new PrefixTrie(List.of("")).matches("java.lang.String"));
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.httpd.Route;
+import xyz.zuoyx.multiyggdrasil.httpd.Router;
+
+public class RouterTest {
+
+	private static final Route.Handler NOOP = (exchange, params) -> {};
+
+	@Test
+	public void testLiteralRoutes() {
+		Route privileges = Route.get("api.minecraftservices.com", "/privileges", NOOP);
+		Route certificates = Route.post("api.minecraftservices.com", "/player/certificates", NOOP);
+		Router router = new Router(List.of(privileges, certificates));
+
+		assertTrue(router.handlesDomain("api.minecraftservices.com"));
+		assertFalse(router.handlesDomain("api.mojang.com"));
+		assertSame(privileges, router.match("api.minecraftservices.com", "GET", "/privileges").getRoute());
+		assertSame(certificates, router.match("api.minecraftservices.com", "POST", "/player/certificates").getRoute());
+		assertNull(router.match("api.minecraftservices.com", "POST", "/privileges"));
+		assertNull(router.match("api.minecraftservices.com", "GET", "/privileges/"));
+		assertNull(router.match("api.minecraftservices.com", "GET", "/player"));
+		assertNull(router.match("api.mojang.com", "GET", "/privileges"));
+	}
+
+	@Test
+	public void testParams() {
+		Route skin = new Route("skins.minecraft.net", Route.ANY_METHOD, "/MinecraftSkins/{username}.png", NOOP);
+		Router router = new Router(List.of(skin));
+
+		Router.Match match = router.match("skins.minecraft.net", "HEAD", "/MinecraftSkins/Notch.png");
+		assertSame(skin, match.getRoute());
+		assertEquals(Map.of("username", "Notch"), match.getParams());
+		assertNull(router.match("skins.minecraft.net", "GET", "/MinecraftSkins/.png"));
+		assertNull(router.match("skins.minecraft.net", "GET", "/MinecraftSkins/Notch.jpg"));
+		assertNull(router.match("skins.minecraft.net", "GET", "/MinecraftSkins/a/b.png"));
+	}
+
+	@Test
+	public void testConstraints() {
+		Route profile = Route.get("sessionserver.mojang.com", "/session/minecraft/profile/{uuid}", NOOP)
+				.where("uuid", uuid -> uuid.length() == 32);
+		Route fallback = Route.get("sessionserver.mojang.com", "/session/minecraft/profile/{id}", NOOP);
+		Route hasJoined = Route.get("sessionserver.mojang.com", "/session/minecraft/hasJoined", NOOP);
+		Router router = new Router(List.of(profile, fallback, hasJoined));
+
+		assertSame(profile, router.match("sessionserver.mojang.com", "GET", "/session/minecraft/profile/069a79f444e94726a5befca90e38aaf5").getRoute());
+		assertSame(fallback, router.match("sessionserver.mojang.com", "GET", "/session/minecraft/profile/Notch").getRoute());
+		// literal segments take precedence
+		assertSame(hasJoined, router.match("sessionserver.mojang.com", "GET", "/session/minecraft/hasJoined").getRoute());
+	}
+
+	@Test
+	public void testFirstRouteWins() {
+		Route first = Route.get("api.mojang.com", "/profiles/minecraft", NOOP);
+		Route second = Route.get("api.mojang.com", "/profiles/minecraft", NOOP);
+		Route any = new Route("api.mojang.com", Route.ANY_METHOD, "/profiles/minecraft", NOOP);
+		Router router = new Router(List.of(first, second, any));
+
+		assertSame(first, router.match("api.mojang.com", "GET", "/profiles/minecraft").getRoute());
+		assertSame(any, router.match("api.mojang.com", "PUT", "/profiles/minecraft").getRoute());
+	}
+}
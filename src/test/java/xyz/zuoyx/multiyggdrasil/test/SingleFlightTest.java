@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.SingleFlight;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testCoalescing() throws InterruptedException, ExecutionException {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Future<Integer> first = pool.submit(() -> flight.execute("a", () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return 42;
+			}));
+			started.await();
+			Future<Integer> second = pool.submit(() -> flight.execute("a", calls::incrementAndGet));
+			while (flight.getCoalescedCount() == 0) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			assertEquals(42, first.get());
+			assertEquals(42, second.get());
+			assertEquals(1, calls.get());
+		} finally {
+			pool.shutdown();
+		}
+
+		// nothing is kept once the call completes
+		assertEquals(2, flight.execute("a", calls::incrementAndGet));
+		assertEquals(1, flight.getCoalescedCount());
+	}
+
+	@Test
+	public void testFailure() {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		assertThrows(UncheckedIOException.class, () -> flight.execute("a", () -> {
+			throw new UncheckedIOException(new IOException());
+		}));
+		assertEquals(1, flight.execute("a", () -> 1));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static java.util.Collections.emptySet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import xyz.zuoyx.multiyggdrasil.transform.TransformContext;
+import xyz.zuoyx.multiyggdrasil.transform.TransformIndex;
+import xyz.zuoyx.multiyggdrasil.transform.TransformUnit;
+
+public class TransformIndexTest {
+
+	private static class Unit implements TransformUnit {
+
+		private final String name;
+		private final Set<String> targetClasses;
+		private final Set<String> triggerConstants;
+
+		Unit(String name, Set<String> targetClasses, Set<String> triggerConstants) {
+			this.name = name;
+			this.targetClasses = targetClasses;
+			this.triggerConstants = triggerConstants;
+		}
+
+		@Override
+		public Optional<ClassVisitor> transform(ClassLoader classLoader, String className, ClassVisitor writer, TransformContext context) {
+			return Optional.empty();
+		}
+
+		@Override
+		public Set<String> getTargetClasses() {
+			return targetClasses;
+		}
+
+		@Override
+		public Set<String> getTriggerConstants() {
+			return triggerConstants;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private final Unit generic = new Unit("generic", emptySet(), emptySet());
+	private final Unit targeted = new Unit("targeted", Set.of("a.Target"), emptySet());
+	private final Unit triggered = new Unit("triggered", emptySet(), Set.of("http://", "https://"));
+	private final Unit both = new Unit("both", Set.of("a.Target", "b.Target"), Set.of("authserver"));
+
+	private static TransformUnit[] units(TransformUnit... units) {
+		return units;
+	}
+
+	@Test
+	public void testTargetingUnits() {
+		TransformIndex index = new TransformIndex(units(generic, targeted, triggered, both));
+		assertArrayEquals(units(generic, targeted, both), index.getTargetingUnits("a.Target"));
+		assertArrayEquals(units(generic, both), index.getTargetingUnits("b.Target"));
+		assertArrayEquals(units(generic), index.getTargetingUnits("c.Other"));
+		assertTrue(index.hasTriggeredUnits());
+		assertFalse(new TransformIndex(units(generic, targeted)).hasTriggeredUnits());
+	}
+
+	@Test
+	public void testSelect() {
+		TransformIndex index = new TransformIndex(units(generic, targeted, triggered, both));
+		byte[] plain = ConstantPoolScannerTest.classWithConstants("hello");
+		byte[] url = ConstantPoolScannerTest.classWithConstants("https://example.com/");
+		byte[] all = ConstantPoolScannerTest.classWithConstants("http://authserver.example.com/");
+
+		assertArrayEquals(units(generic), index.select(index.getTargetingUnits("c.Other"), plain));
+		assertArrayEquals(units(generic, triggered), index.select(index.getTargetingUnits("c.Other"), url));
+		assertArrayEquals(units(generic, triggered, both), index.select(index.getTargetingUnits("c.Other"), all));
+		// the order of registration is kept, whether a unit is selected by name or by constant
+		assertArrayEquals(units(generic, targeted, triggered, both), index.select(index.getTargetingUnits("a.Target"), url));
+	}
+
+	@Test
+	public void testWithUnit() {
+		TransformIndex index = new TransformIndex(units(targeted));
+		TransformIndex extended = index.withUnit(triggered).withUnit(generic);
+		byte[] url = ConstantPoolScannerTest.classWithConstants("http://example.com/");
+
+		assertArrayEquals(units(targeted, generic), extended.getTargetingUnits("a.Target"));
+		assertArrayEquals(units(triggered, generic), extended.select(extended.getTargetingUnits("c.Other"), url));
+		// the original index is left as is
+		assertArrayEquals(units(targeted), index.getTargetingUnits("a.Target"));
+		assertArrayEquals(units(), index.getTargetingUnits("c.Other"));
+		assertFalse(index.hasTriggeredUnits());
+	}
+
+	/**
+	 * Checks the selection against decoding all the string constants and searching them one by one,
+	 * which is how the units used to be matched.
+	 */
+	@Test
+	public void testSelectAgainstDecodedConstants() {
+		String[] triggers = { "ab", "ba", "abc", "c\u00e9", "\u540d", "aaa" };
+		String[] alphabet = { "a", "b", "c", "\u00e9", "\u540d", "\0" };
+		Random random = new Random(0);
+		List<TransformUnit> unitList = new ArrayList<>();
+		unitList.add(generic);
+		for (int i = 0; i < triggers.length; i++) {
+			Set<String> triggerConstants = i % 2 == 0 ? Set.of(triggers[i]) : Set.of(triggers[i], triggers[i - 1]);
+			Set<String> targetClasses = i == 3 ? Set.of("a.Target") : emptySet();
+			unitList.add(new Unit("unit" + i, targetClasses, triggerConstants));
+		}
+		TransformIndex index = new TransformIndex(unitList.toArray(new TransformUnit[0]));
+
+		for (int round = 0; round < 2000; round++) {
+			Object[] constants = new Object[random.nextInt(4)];
+			for (int i = 0; i < constants.length; i++) {
+				if (random.nextInt(4) == 0) {
+					constants[i] = random.nextLong();
+					continue;
+				}
+				StringBuilder sb = new StringBuilder();
+				for (int n = random.nextInt(6); n > 0; n--) {
+					sb.append(alphabet[random.nextInt(alphabet.length)]);
+				}
+				constants[i] = sb.toString();
+			}
+			byte[] classfile = ConstantPoolScannerTest.classWithConstants(constants);
+			String className = random.nextBoolean() ? "a.Target" : "c.Other";
+
+			List<String> decoded = extractStringConstants(new ClassReader(classfile));
+			List<TransformUnit> expected = new ArrayList<>();
+			for (TransformUnit unit : unitList) {
+				boolean selected = unit.getTargetClasses().contains(className)
+						|| (unit.getTargetClasses().isEmpty() && unit.getTriggerConstants().isEmpty());
+				for (String constant : decoded) {
+					for (String trigger : unit.getTriggerConstants()) {
+						selected |= constant.contains(trigger);
+					}
+				}
+				if (selected) {
+					expected.add(unit);
+				}
+			}
+			assertArrayEquals(expected.toArray(), index.select(index.getTargetingUnits(className), classfile));
+		}
+	}
+
+	private static List<String> extractStringConstants(ClassReader reader) {
+		List<String> constants = new ArrayList<>();
+		char[] buf = new char[reader.getMaxStringLength()];
+		for (int idx = 1; idx < reader.getItemCount(); idx++) {
+			int offset = reader.getItem(idx);
+			if (offset != 0 && reader.readByte(offset - 1) == 8) { // CONSTANT_String_info
+				constants.add((String) reader.readConst(idx, buf));
+			}
+		}
+		return constants;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.UTF8ByteArrayReader;
+
+public class UTF8ByteArrayReaderTest {
+
+	private static String readAll(byte[] bytes, int chunkSize) {
+		UTF8ByteArrayReader reader = new UTF8ByteArrayReader(bytes);
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[chunkSize];
+		int n;
+		while ((n = reader.read(buf, 0, buf.length)) != -1) {
+			sb.append(buf, 0, n);
+		}
+		return sb.toString();
+	}
+
+	private static void assertDecodes(byte[] bytes) {
+		for (int chunkSize : new int[] { 1, 2, 3, 1024 }) {
+			assertEquals(new String(bytes, UTF_8), readAll(bytes, chunkSize));
+		}
+	}
+
+	@Test
+	public void testWellFormed() {
+		assertDecodes("".getBytes(UTF_8));
+		assertDecodes("{\"name\":\"Notch\"}".getBytes(UTF_8));
+		assertDecodes("\u540d\u5b57 \ud83d\ude00 \u00f1 \ud83d\ude00\ud83d\ude00".getBytes(UTF_8));
+	}
+
+	@Test
+	public void testMalformed() {
+		assertDecodes(new byte[] { 'a', (byte) 0xe4, (byte) 0xbd, 'b' }); // truncated sequence
+		assertDecodes(new byte[] { (byte) 0xc0, (byte) 0xaf }); // overlong form
+		assertDecodes(new byte[] { (byte) 0xed, (byte) 0xa0, (byte) 0x80 }); // encoded surrogate
+		assertDecodes(new byte[] { 'a', (byte) 0xf0, (byte) 0x9f, (byte) 0x98 }); // truncated at the end
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			byte[] bytes = new byte[random.nextInt(64)];
+			random.nextBytes(bytes);
+			assertDecodes(bytes);
+		}
+	}
+}
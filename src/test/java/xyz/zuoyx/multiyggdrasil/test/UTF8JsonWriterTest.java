@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2026  Ethan Zuo <yuxuan.zuo@outlook.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package xyz.zuoyx.multiyggdrasil.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import xyz.zuoyx.multiyggdrasil.util.UTF8JsonWriter;
+
+public class UTF8JsonWriterTest {
+
+	private static String write(String value) {
+		return new String(new UTF8JsonWriter(0).value(value).toByteArray(), UTF_8);
+	}
+
+	@Test
+	public void testStructure() {
+		byte[] json = new UTF8JsonWriter(0)
+				.beginObject()
+				.name("id").value(new UUID(0x069a79f444e94726L, 0xa5befca90e38aaf5L))
+				.name("properties").beginArray()
+				.beginObject().name("name").value("a").endObject()
+				.beginObject().endObject()
+				.endArray()
+				.name("empty").beginArray().endArray()
+				.endObject()
+				.toByteArray();
+		assertEquals("{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"properties\":[{\"name\":\"a\"},{}],\"empty\":[]}", new String(json, UTF_8));
+	}
+
+	@Test
+	public void testEscaping() {
+		assertEquals("\"a\\\"b\\\\c\"", write("a\"b\\c"));
+		assertEquals("\"\\n\\r\\t\\u0001\\u2028\"", write("\n\r\t\u0001\u2028"));
+		assertEquals("\"=<>&'\"", write("=<>&'"));
+	}
+
+	@Test
+	public void testUTF8() {
+		String value = "\u00e9\u540d\ud83d\ude00";
+		assertEquals("\"" + value + "\"", write(value));
+		assertEquals("\"?\"", write("\ud83d"));
+	}
+}